@@ -0,0 +1,285 @@
+// File: AnamorphicRemux.java
+package com.squeezer.app;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Metadata-only desqueeze / squeeze: the compressed samples are copied untouched, only the display shape changes:
+ *  - remux() copies the video and audio samples of an extractor into a new MP4 with MediaMuxer (rotation kept
+ *    through the orientation hint); nothing is decoded or encoded, so there is no generation loss
+ *  - The video sample entry then gets a pasp (pixel aspect ratio) box, and tkhd's size becomes the coded
+ *    size stretched by the same ratio (width for wide pixels, height for tall ones, never below the coded
+ *    size), for players that size the track from the track header
+ *  - moov is rewritten in place: into the free box MediaMuxer reserves behind it, or appended at the end with
+ *    the old one turned into a free box. mdat never moves, so the chunk offsets stay valid
+ * remux() returns false when the source can't be copied this way (a track the muxer refuses, an unexpected box
+ * layout); the caller then renders and re-encodes as before.
+ */
+final class AnamorphicRemux {
+    private static final String TAG = "AnamorphicRemux";
+    private static final int MIN_BUFFER_BYTES = 1 << 20;
+    private static final int MAX_MOOV_BYTES = 64 << 20;
+    /** Box header + the fixed VisualSampleEntry fields; child boxes (avcC, pasp…) follow. */
+    private static final int VISUAL_SAMPLE_ENTRY_BYTES = 8 + 78;
+    private static final int PASP_BYTES = 16;
+
+    private static final int MOOV = fourcc("moov"), TRAK = fourcc("trak"), TKHD = fourcc("tkhd"),
+            MDIA = fourcc("mdia"), HDLR = fourcc("hdlr"), MINF = fourcc("minf"), STBL = fourcc("stbl"),
+            STSD = fourcc("stsd"), PASP = fourcc("pasp"), FREE = fourcc("free"), SKIP = fourcc("skip"),
+            VIDE = fourcc("vide");
+
+    private AnamorphicRemux() {}
+
+    // ---------- Ratio ----------
+    /**
+     * pasp spacing {h, v} stretching the stored pixels by {@code factor}: along the stored x axis when
+     * {@code horizontal}, else along y (rotated clips stretch the other stored axis for the same display axis).
+     */
+    static int[] pixelAspect(float factor, boolean horizontal) {
+        int num = Math.max(1, Math.round(factor * 100));
+        int den = 100;
+        int g = gcd(num, den);
+        num /= g;
+        den /= g;
+        return horizontal ? new int[] { num, den } : new int[] { den, num };
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    // ---------- Remux ----------
+    /**
+     * Copies the first video track and every audio track of {@code extractor} (no tracks selected yet) to
+     * {@code outputPath} and tags the video with {@code pixelAspect}. {@code progress} gets each video sample's
+     * time. On false the extractor is back to no selected tracks at the start, ready for the re-encode path.
+     */
+    static boolean remux(MediaExtractor extractor, String outputPath, int rotationDegrees, int[] pixelAspect,
+                         @Nullable ExportPipeline.ProgressListener progress) {
+        final long t0 = System.nanoTime();
+        final int[] trackMap = new int[extractor.getTrackCount()];
+        MediaMuxer muxer = null;
+        boolean started = false, ok = false;
+        try {
+            muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            int rotation = ((rotationDegrees % 360) + 360) % 360;
+            if (rotation % 90 == 0) muxer.setOrientationHint(rotation);
+
+            int videoTrack = -1;
+            int maxInput = MIN_BUFFER_BYTES;
+            for (int i = 0; i < trackMap.length; i++) {
+                trackMap[i] = -1;
+                MediaFormat f = extractor.getTrackFormat(i);
+                String mime = f.getString(MediaFormat.KEY_MIME);
+                if (mime == null) continue;
+                boolean video = mime.startsWith("video/");
+                if (!(video && videoTrack < 0) && !mime.startsWith("audio/")) continue; // metadata, extra video
+                trackMap[i] = muxer.addTrack(f);
+                extractor.selectTrack(i);
+                if (video) videoTrack = i;
+                if (f.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) {
+                    maxInput = Math.max(maxInput, f.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE));
+                }
+            }
+            if (videoTrack < 0) return false;
+            extractor.seekTo(0, MediaExtractor.SEEK_TO_CLOSEST_SYNC);
+            muxer.start();
+            started = true;
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(maxInput).order(ByteOrder.nativeOrder());
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            int samples = 0;
+            int track;
+            while ((track = extractor.getSampleTrackIndex()) >= 0) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P && extractor.getSampleSize() > buffer.capacity()) {
+                    buffer = ByteBuffer.allocateDirect((int) extractor.getSampleSize()).order(ByteOrder.nativeOrder());
+                }
+                buffer.clear();
+                int size = extractor.readSampleData(buffer, 0);
+                if (size < 0) break;
+                long ptsUs = extractor.getSampleTime();
+                int flags = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0
+                        ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0;
+                info.set(0, size, ptsUs, flags);
+                muxer.writeSampleData(trackMap[track], buffer, info);
+                samples++;
+                if (track == videoTrack && progress != null) progress.onProgress(ptsUs);
+                extractor.advance();
+            }
+
+            started = false;
+            muxer.stop();
+            muxer.release();
+            muxer = null;
+
+            writePixelAspect(outputPath, pixelAspect[0], pixelAspect[1]);
+            ok = true;
+            Log.i(TAG, String.format(Locale.US, "Remuxed %d samples in %d ms, pasp %d:%d",
+                    samples, (System.nanoTime() - t0) / 1_000_000, pixelAspect[0], pixelAspect[1]));
+            return true;
+        } catch (Throwable t) {
+            Log.w(TAG, "Remux unavailable; re-encoding instead", t);
+            return false;
+        } finally {
+            if (muxer != null) {
+                try { if (started) muxer.stop(); } catch (Throwable ignored) {}
+                try { muxer.release(); } catch (Throwable ignored) {}
+            }
+            if (!ok) {
+                for (int i = 0; i < trackMap.length; i++) {
+                    try { extractor.unselectTrack(i); } catch (Throwable ignored) {}
+                }
+                try { extractor.seekTo(0, MediaExtractor.SEEK_TO_CLOSEST_SYNC); } catch (Throwable ignored) {}
+            }
+        }
+    }
+
+    // ---------- pasp ----------
+    /** Adds (or updates) the pasp box of the first video track of the MP4 at {@code path}. */
+    static void writePixelAspect(String path, int hSpacing, int vSpacing) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(path, "rw")) {
+            final long length = raf.length();
+            long moovPos = -1, moovSize = 0;
+            long nextPos = -1, nextSize = 0;
+            int nextType = 0, nextHeader = 0;
+            boolean lastToEof = false;
+            for (long pos = 0; pos + 8 <= length; ) {
+                raf.seek(pos);
+                long size = raf.readInt() & 0xFFFFFFFFL;
+                int type = raf.readInt();
+                int header = 8;
+                if (size == 1) {
+                    size = raf.readLong();
+                    header = 16;
+                } else if (size == 0) {
+                    size = length - pos;
+                    lastToEof = true;
+                }
+                if (size < header) throw new IOException("Bad box size at " + pos);
+                if (moovPos >= 0 && nextPos < 0) {
+                    nextPos = pos;
+                    nextSize = size;
+                    nextType = type;
+                    nextHeader = header;
+                }
+                if (type == MOOV) {
+                    moovPos = pos;
+                    moovSize = size;
+                }
+                pos += size;
+            }
+            if (moovPos < 0) throw new IOException("No moov box");
+            if (moovSize > MAX_MOOV_BYTES) throw new IOException("moov too large: " + moovSize);
+
+            byte[] old = new byte[(int) moovSize];
+            raf.seek(moovPos);
+            raf.readFully(old);
+            byte[] moov = addPixelAspect(old, hSpacing, vSpacing);
+            int delta = moov.length - old.length;
+
+            boolean freeAfter = nextPos >= 0 && (nextType == FREE || nextType == SKIP) && nextHeader == 8
+                    && (nextSize == delta || nextSize >= delta + 8);
+            if (delta == 0 || nextPos < 0) {
+                // Same size, or moov is the last box
+                raf.seek(moovPos);
+                raf.write(moov);
+            } else if (freeAfter) {
+                // MediaMuxer's fast-start layout: moov grows into the free box reserved behind it
+                raf.seek(moovPos);
+                raf.write(moov);
+                if (nextSize > delta) {
+                    raf.writeInt((int) (nextSize - delta));
+                    raf.writeInt(FREE);
+                }
+            } else {
+                if (lastToEof) throw new IOException("Last box runs to end of file");
+                raf.seek(length);
+                raf.write(moov);
+                raf.seek(moovPos + 4);
+                raf.writeInt(FREE);
+            }
+        }
+    }
+
+    /** moov with pasp in the first video sample entry and tkhd's size set to match; the box sizes on the way up grow. */
+    private static byte[] addPixelAspect(byte[] moov, int hSpacing, int vSpacing) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(moov);
+        int moovEnd = end(b, 0);
+        for (int trak = find(b, 8, moovEnd, TRAK); trak >= 0; trak = find(b, end(b, trak), moovEnd, TRAK)) {
+            int mdia = find(b, trak + 8, end(b, trak), MDIA);
+            int hdlr = mdia < 0 ? -1 : find(b, mdia + 8, end(b, mdia), HDLR);
+            if (hdlr < 0 || b.getInt(hdlr + 16) != VIDE) continue; // version/flags, pre_defined, handler_type
+            int minf = find(b, mdia + 8, end(b, mdia), MINF);
+            int stbl = minf < 0 ? -1 : find(b, minf + 8, end(b, minf), STBL);
+            int stsd = stbl < 0 ? -1 : find(b, stbl + 8, end(b, stbl), STSD);
+            if (stsd < 0 || b.getInt(stsd + 12) < 1) throw new IOException("No video sample entry");
+            int entry = stsd + 16; // version/flags, entry_count
+            int entryEnd = end(b, entry);
+            if (entryEnd > end(b, stsd)) throw new IOException("Bad sample entry");
+
+            int tkhd = find(b, trak + 8, end(b, trak), TKHD);
+            if (tkhd >= 0) {
+                int codedWidth = b.getShort(entry + 8 + 24) & 0xFFFF; // after reserved, data_reference_index, pre_defined
+                int codedHeight = b.getShort(entry + 8 + 26) & 0xFFFF;
+                // width, height: 16.16 fixed point, last in tkhd. Stretch the short side so nothing drops below
+                // the coded size (tall pixels: rotated desqueezes, simulator squeezes)
+                long width = (long) codedWidth << 16, height = (long) codedHeight << 16;
+                if (hSpacing >= vSpacing) width = width * hSpacing / vSpacing;
+                else height = height * vSpacing / hSpacing;
+                b.putInt(end(b, tkhd) - 8, (int) width);
+                b.putInt(end(b, tkhd) - 4, (int) height);
+            }
+
+            int pasp = find(b, entry + VISUAL_SAMPLE_ENTRY_BYTES, entryEnd, PASP);
+            if (pasp >= 0) {
+                b.putInt(pasp + 8, hSpacing);
+                b.putInt(pasp + 12, vSpacing);
+                return moov;
+            }
+
+            ByteBuffer out = ByteBuffer.allocate(moov.length + PASP_BYTES);
+            out.put(moov, 0, entryEnd);
+            out.putInt(PASP_BYTES).putInt(PASP).putInt(hSpacing).putInt(vSpacing);
+            out.put(moov, entryEnd, moov.length - entryEnd);
+            for (int box : new int[] { 0, trak, mdia, minf, stbl, stsd, entry }) {
+                out.putInt(box, out.getInt(box) + PASP_BYTES);
+            }
+            return out.array();
+        }
+        throw new IOException("No video track");
+    }
+
+    /** Offset of the first {@code type} box in [from, end), or -1. */
+    private static int find(ByteBuffer b, int from, int end, int type) throws IOException {
+        for (int pos = from; pos + 8 <= end; pos = end(b, pos)) {
+            if (end(b, pos) > end) throw new IOException("Box overruns its parent at " + pos);
+            if (b.getInt(pos + 4) == type) return pos;
+        }
+        return -1;
+    }
+
+    /** End offset of the box at {@code pos} (32-bit sizes only, as MediaMuxer writes them inside moov). */
+    private static int end(ByteBuffer b, int pos) throws IOException {
+        long size = b.getInt(pos) & 0xFFFFFFFFL;
+        if (size < 8 || pos + size > b.capacity()) throw new IOException("Unsupported box size at " + pos);
+        return pos + (int) size;
+    }
+
+    private static int fourcc(String type) {
+        return ByteBuffer.wrap(type.getBytes(StandardCharsets.US_ASCII)).getInt();
+    }
+}
@@ -0,0 +1,96 @@
+// File: AudioInterleaver.java
+package com.squeezer.app;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Source audio passed through into a MediaMuxer in step with the video being encoded:
+ *  - writeUntil(ptsUs) copies the audio samples presented up to the video sample just written, so both
+ *    tracks reach the muxer in timestamp order: it never holds a whole track, and the file interleaves
+ *    in small chunks (fast start and seeking)
+ *  - One reused direct buffer, sized from the track's max input size
+ *  - Timestamps are shifted by offsetUs onto the video's timeline; samples before it are skipped
+ * Calls come from whichever thread writes the video samples, one at a time. release() frees the extractor.
+ */
+final class AudioInterleaver {
+    private static final String TAG = "AudioInterleaver";
+    private static final int MIN_BUFFER_BYTES = 64 * 1024;
+
+    private final MediaExtractor extractor;
+    private final MediaFormat format;
+    private final long offsetUs;
+    private final ByteBuffer buffer;
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    private boolean done;
+    private int samples;
+
+    /** Takes over {@code extractor}: selects audio {@code track} and seeks it to {@code offsetUs}. */
+    AudioInterleaver(MediaExtractor extractor, int track, long offsetUs) {
+        this.extractor = extractor;
+        this.format = extractor.getTrackFormat(track);
+        this.offsetUs = offsetUs;
+        int size = format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)
+                ? format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE) : 0;
+        buffer = ByteBuffer.allocateDirect(Math.max(size, MIN_BUFFER_BYTES)).order(ByteOrder.nativeOrder());
+        extractor.selectTrack(track);
+        if (offsetUs > 0) extractor.seekTo(offsetUs, MediaExtractor.SEEK_TO_CLOSEST_SYNC);
+    }
+
+    /** Index of the first audio track of {@code extractor}, or -1. */
+    static int findAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) return i;
+        }
+        return -1;
+    }
+
+    /** Format to add as the muxer's audio track. */
+    MediaFormat format() {
+        return format;
+    }
+
+    /** Writes the samples presented at or before {@code ptsUs} (video timeline) to {@code track}. */
+    void writeUntil(MediaMuxer muxer, int track, long ptsUs) {
+        while (!done) {
+            long sampleUs = extractor.getSampleTime();
+            if (sampleUs < 0) {
+                finished();
+                return;
+            }
+            long outUs = sampleUs - offsetUs;
+            if (outUs > ptsUs) return;
+
+            buffer.clear();
+            int size = extractor.readSampleData(buffer, 0);
+            if (size < 0) {
+                finished();
+                return;
+            }
+            if (outUs >= 0) {
+                int flags = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0
+                        ? MediaCodec.BUFFER_FLAG_SYNC_FRAME : 0;
+                info.set(0, size, outUs, flags);
+                muxer.writeSampleData(track, buffer, info);
+                samples++;
+            }
+            extractor.advance();
+        }
+    }
+
+    void release() {
+        try { extractor.release(); } catch (Throwable ignored) {}
+    }
+
+    private void finished() {
+        done = true;
+        Log.d(TAG, samples + " audio samples interleaved");
+    }
+}
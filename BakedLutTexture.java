@@ -0,0 +1,93 @@
+// File: BakedLutTexture.java
+package com.squeezer.app;
+
+import android.opengl.GLES20;
+
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * GL side of a GradeBaker: the baked table as LUT textures.
+ *  - One cube texture (3D or strip, per GlCaps) and curve texture, refreshed with glTexSubImage2D/3D when
+ *    the bake changed; recreated only when the lattice size changes
+ *  - Tracks the baker's generations, so upload() is a no-op while nothing was rebaked
+ * GL thread only; the baker itself is plain CPU work.
+ */
+final class BakedLutTexture {
+    private int texture;
+    private int textureSize;
+    private boolean texture3D;
+    private int curveTexture;
+    private int generation = -1, curveGeneration = -1;
+    private @Nullable ByteBuffer staging;
+    private @Nullable LutTextures bound;
+
+    /**
+     * Uploads {@code baker}'s current bake (if it changed) and returns it as LutTextures: baked cube plus the
+     * LUT's curve, if any (draw without the GRADE stage). Null before the baker's first update().
+     */
+    @Nullable LutTextures upload(GradeBaker baker) {
+        synchronized (baker) {
+            final int size = baker.size();
+            if (size == 0) return null;
+            if (generation == baker.generation() && bound != null) return bound;
+            final GlCaps caps = LutTextureCache.forCurrentContext().caps();
+            final boolean reuse = texture != 0 && textureSize == size;
+            if (!reuse) {
+                deleteTexture(); // also drops the curve texture, recreated below
+                texture3D = caps.use3D(size);
+            }
+            if (curveGeneration != baker.curveGeneration()) {
+                if (curveTexture != 0) GLES20.glDeleteTextures(1, new int[]{ curveTexture }, 0);
+                FloatBuffer curve = baker.curve();
+                curveTexture = curve != null ? ShaderUtils.createCurveTexture(curve, baker.curveSize(), caps.lutFormat) : 0;
+                curveGeneration = baker.curveGeneration();
+                bound = null;
+            }
+            final int bytes = size * size * size * caps.lutFormat.bytesPerTexel;
+            if (staging == null || staging.capacity() < bytes) {
+                staging = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+            }
+            staging.clear();
+            ShaderUtils.packCube(FloatBuffer.wrap(baker.table()), size, texture3D, caps.lutFormat, staging);
+            staging.position(0);
+            if (reuse) {
+                ShaderUtils.updateCubeTexture(texture, size, texture3D, caps.lutFormat, staging);
+            } else {
+                texture = ShaderUtils.createCubeTexture(size, texture3D, caps.lutFormat, staging);
+                textureSize = size;
+            }
+            if (bound == null) {
+                bound = new LutTextures(texture, size, texture3D, curveTexture,
+                        curveTexture != 0 ? ShaderUtils.curveTextureWidth(baker.curveSize()) : 0);
+            }
+            generation = baker.generation();
+            return bound;
+        }
+    }
+
+    /** Deletes the textures (GL thread); the baker keeps its table, so the next upload() recreates them. */
+    void release() {
+        deleteTexture();
+        staging = null;
+    }
+
+    /** Forgets the textures without GL calls (their context is already gone). */
+    void dropTexture() {
+        texture = 0;
+        textureSize = 0;
+        curveTexture = 0;
+        generation = -1;
+        curveGeneration = -1;
+        bound = null;
+    }
+
+    private void deleteTexture() {
+        if (texture != 0) GLES20.glDeleteTextures(1, new int[]{ texture }, 0);
+        if (curveTexture != 0) GLES20.glDeleteTextures(1, new int[]{ curveTexture }, 0);
+        dropTexture();
+    }
+}
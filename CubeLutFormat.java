@@ -0,0 +1,37 @@
+// File: CubeLutFormat.java
+package com.squeezer.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/** Adobe / Resolve .cube, backed by CubeParser (stream, heap and mapped buffers). */
+final class CubeLutFormat implements LutFormat {
+    private static final String[] KEYWORDS = {
+            "TITLE", "LUT_3D_SIZE", "LUT_1D_SIZE", "DOMAIN_MIN", "DOMAIN_MAX",
+            "LUT_1D_INPUT_RANGE", "LUT_3D_INPUT_RANGE"
+    };
+
+    @Override public String name() { return "cube"; }
+
+    @Override public String[] extensions() { return new String[]{ "cube" }; }
+
+    @Override public boolean sniff(byte[] head, int len) {
+        String line = LutFormats.firstMeaningfulLine(head, len);
+        if (line == null) return false;
+        String upper = line.toUpperCase(Locale.US);
+        for (String k : KEYWORDS) {
+            if (upper.startsWith(k) && (upper.length() == k.length() || Character.isWhitespace(upper.charAt(k.length())))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override public LutTable read(InputStream in) throws IOException { return CubeParser.parse(in); }
+
+    @Override public LutTable read(ByteBuffer buf) throws IOException { return CubeParser.parse(buf); }
+
+    @Override public LutInfo scanHeader(InputStream in) throws IOException { return CubeParser.scanHeader(in); }
+}
@@ -0,0 +1,39 @@
+// File: CubeParseException.java
+package com.squeezer.app;
+
+import java.io.IOException;
+
+/**
+ * Structured .cube parse failure thrown by CubeParser.
+ *  - line: 1-based source line of a syntax error, or -1 for whole-file checks
+ *  - expectedRows / actualRows: set for row-count mismatches, otherwise -1
+ * The message keeps the existing "... (line N)" / "expected=N got=M" text.
+ */
+public class CubeParseException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int line;
+    private final int expectedRows;
+    private final int actualRows;
+
+    CubeParseException(String message, int line, int expectedRows, int actualRows) {
+        super(message);
+        this.line = line;
+        this.expectedRows = expectedRows;
+        this.actualRows = actualRows;
+    }
+
+    static CubeParseException atLine(String msg, int line) {
+        return new CubeParseException(msg + " (line " + line + ")", line, -1, -1);
+    }
+
+    static CubeParseException rowCount(String msg, int expected, int actual) {
+        return new CubeParseException(msg + ". expected=" + expected + " got=" + actual, -1, expected, actual);
+    }
+
+    public int getLine() { return line; }
+    public int getExpectedRows() { return expectedRows; }
+    public int getActualRows() { return actualRows; }
+
+    public boolean isRowCountMismatch() { return expectedRows >= 0; }
+}
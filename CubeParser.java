@@ -0,0 +1,547 @@
+// File: CubeParser.java
+package com.squeezer.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Byte-level .cube parser shared by LUTLoader, LutManager and the LUT picker.
+ *  - Reads raw bytes (no charset decoding, no per-line Strings, no split())
+ *  - Floats are parsed in place and written straight into a float[] sized from LUT_3D_SIZE
+ *  - Keywords are case-insensitive; '#', ';' and '//' comment lines are skipped
+ *  - When both LUT_1D_SIZE and LUT_3D_SIZE are present, 1D rows come first (Resolve layout)
+ *  - Row counts are checked exactly; failures are CubeParseException (line / expected vs actual rows)
+ *  - Large in-memory / mapped cubes parse their data section in parallel chunks (see parseParallel)
+ *  - scanHeader() reads keywords only and stops at the first data row (library listings)
+ */
+public final class CubeParser {
+    private static final int CHUNK = 64 * 1024;
+    private static final int HEADER_CHUNK = 4 * 1024;
+    private static final int MAX_3D_SIZE = 256;
+    private static final int MAX_1D_SIZE = 65536;
+
+    // Parallel data-section parsing: only for buffers big enough to amortize the fork-join hop
+    private static final int PARALLEL_MIN_BYTES = 4 * 1024 * 1024;   // ~49³ text cube
+    private static final int PARALLEL_CHUNK_BYTES = 1024 * 1024;
+
+    // Exact powers of ten representable in a double
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // ---------- Public API ----------
+    /** Parse a .cube stream through a pooled chunk buffer. The stream is not closed. */
+    public static LutTable parse(InputStream in) throws IOException {
+        if (in == null) throw new IOException("LUT stream is null");
+        byte[] chunk = acquireChunk();
+        try {
+            return new CubeParser(in, null, chunk, 0, 0).parseAll();
+        } finally {
+            releaseChunk(chunk);
+        }
+    }
+
+    /**
+     * Parse .cube bytes between position and limit. Heap buffers are tokenized in place;
+     * direct / mapped buffers are walked in pooled chunks (bulk copies, no decoding).
+     */
+    public static LutTable parse(ByteBuffer src) throws IOException {
+        if (src == null) throw new IOException("LUT buffer is null");
+        if (src.hasArray()) {
+            int off = src.arrayOffset();
+            CubeParser p = new CubeParser(null, null, src.array(), off + src.position(), off + src.limit());
+            p.allowParallel = true;
+            return p.parseAll();
+        }
+        byte[] chunk = acquireChunk();
+        try {
+            CubeParser p = new CubeParser(null, src.duplicate(), chunk, 0, 0);
+            p.allowParallel = true;
+            return p.parseAll();
+        } finally {
+            releaseChunk(chunk);
+        }
+    }
+
+    /**
+     * Header-only scan: TITLE, LUT_3D_SIZE / LUT_1D_SIZE and DOMAIN_MIN/MAX. Stops at the first
+     * data row, so tables are never allocated and only the first few KB are read. Sizes that
+     * only appear after the data are reported as 0. The stream is not closed.
+     */
+    public static LutInfo scanHeader(InputStream in) throws IOException {
+        if (in == null) throw new IOException("LUT stream is null");
+        CubeParser p = new CubeParser(in, null, new byte[HEADER_CHUNK], 0, 0);
+        p.headerOnly = true;
+        p.skipBom();
+        int c;
+        while ((c = p.skipBlanks()) != -1) {
+            if (c == '\n') { p.pos++; p.line++; continue; }
+            if (isRowStart(c)) break;
+            if (c == '#' || c == ';' || c == '/') { p.skipLine(); continue; }
+            p.parseKeyword();
+        }
+        return new LutInfo(p.title, Math.max(p.size3D, 0), Math.max(p.size1D, 0), p.domainMin, p.domainMax);
+    }
+
+    // ---------- Chunk pool ----------
+    private static final int POOL_MAX = 4;
+    private static final ArrayDeque<byte[]> POOL = new ArrayDeque<>();
+
+    private static byte[] acquireChunk() {
+        synchronized (POOL) {
+            byte[] b = POOL.pollFirst();
+            if (b != null) return b;
+        }
+        return new byte[CHUNK];
+    }
+
+    private static void releaseChunk(byte[] b) {
+        synchronized (POOL) {
+            if (POOL.size() < POOL_MAX) POOL.addFirst(b);
+        }
+    }
+
+    // ---------- Source ----------
+    private final InputStream in;   // streaming source, or null
+    private final ByteBuffer src;   // direct/mapped source, or null
+    private final byte[] buf;
+    private int pos, lim;
+    private int line = 1;
+    private boolean allowParallel;
+    private boolean headerOnly;     // scanHeader(): record sizes, never allocate tables
+
+    // ---------- Result state ----------
+    private String title;
+    private final float[] domainMin = {0f, 0f, 0f};
+    private final float[] domainMax = {1f, 1f, 1f};
+    private int size3D = -1, size1D = -1;
+    private float[] data3D, data1D;
+    private int rows3D, rows1D;
+    private final float[] row = new float[3];
+    private final byte[] word = new byte[32];
+
+    private CubeParser(InputStream in, ByteBuffer src, byte[] buf, int pos, int lim) {
+        this.in = in;
+        this.src = src;
+        this.buf = buf;
+        this.pos = pos;
+        this.lim = lim;
+    }
+
+    private LutTable parseAll() throws IOException {
+        skipBom();
+        int c;
+        while ((c = skipBlanks()) != -1) {
+            if (c == '\n') { pos++; line++; continue; }
+            if (isRowStart(c)) {
+                if (allowParallel && parseParallel()) break;
+                parseRow();
+                continue;
+            }
+            if (c == '#' || c == ';' || c == '/') { skipLine(); continue; }
+            parseKeyword();
+        }
+        return finish();
+    }
+
+    private LutTable finish() throws IOException {
+        if (size3D <= 0 && size1D <= 0) {
+            throw new CubeParseException("Missing LUT_3D_SIZE or LUT_1D_SIZE", -1, -1, -1);
+        }
+        if (size1D > 0 && rows1D != size1D) {
+            throw CubeParseException.rowCount("Invalid 1D RGB count", size1D, rows1D);
+        }
+        if (size3D > 0) {
+            int expected = size3D * size3D * size3D;
+            if (rows3D != expected) {
+                throw CubeParseException.rowCount("Invalid RGB count", expected, rows3D);
+            }
+        } else if (rows3D > 0) {
+            throw CubeParseException.rowCount("Unexpected RGB rows after 1D table", 0, rows3D);
+        }
+        return new LutTable(title,
+                Math.max(size3D, 0), size3D > 0 ? data3D : null,
+                Math.max(size1D, 0), size1D > 0 ? data1D : null,
+                domainMin, domainMax);
+    }
+
+    // ---------- Rows ----------
+    private void parseRow() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            int c = skipBlanks();
+            if (c == -1 || c == '\n') throw error("RGB row malformed");
+            row[i] = parseFloat();
+        }
+        skipLine();
+
+        if (size1D > 0 && (rows1D < size1D || size3D <= 0)) {
+            if (rows1D < size1D) put(data1D, rows1D);
+            rows1D++;
+            return;
+        }
+        if (size3D > 0) {
+            if (rows3D < size3D * size3D * size3D) put(data3D, rows3D);
+        } else {
+            // No size declared yet: keep rows in a growable table, trimmed once LUT_3D_SIZE shows up
+            int need = (rows3D + 1) * 3;
+            if (data3D == null) data3D = new float[3 * 4096];
+            else if (data3D.length < need) data3D = copyOf(data3D, data3D.length * 2, rows3D * 3);
+            put(data3D, rows3D);
+        }
+        rows3D++;
+    }
+
+    private void put(float[] dst, int rowIndex) {
+        int o = rowIndex * 3;
+        dst[o] = row[0];
+        dst[o + 1] = row[1];
+        dst[o + 2] = row[2];
+    }
+
+    // ---------- Keywords ----------
+    private void parseKeyword() throws IOException {
+        int len = 0;
+        int c;
+        while ((c = peek()) != -1 && c != '\n' && !isBlank(c)) {
+            if (len < word.length) word[len] = (byte) c;
+            len++;
+            pos++;
+        }
+
+        if (is(len, "TITLE")) {
+            title = readTitle();
+        } else if (is(len, "LUT_3D_SIZE")) {
+            int n = parseIntArg(2, MAX_3D_SIZE);
+            if (headerOnly) size3D = n; else setSize3D(n);
+        } else if (is(len, "LUT_1D_SIZE")) {
+            size1D = parseIntArg(2, MAX_1D_SIZE);
+            if (!headerOnly) data1D = new float[size1D * 3];
+        } else if (is(len, "DOMAIN_MIN")) {
+            parseTriple(domainMin);
+        } else if (is(len, "DOMAIN_MAX")) {
+            parseTriple(domainMax);
+        } else if (is(len, "LUT_1D_INPUT_RANGE") || is(len, "LUT_3D_INPUT_RANGE")) {
+            float lo = parseFloatArg(), hi = parseFloatArg();
+            domainMin[0] = domainMin[1] = domainMin[2] = lo;
+            domainMax[0] = domainMax[1] = domainMax[2] = hi;
+        }
+        // Unknown keywords are ignored
+        skipLine();
+    }
+
+    private void setSize3D(int n) {
+        float[] table = new float[n * n * n * 3];
+        if (rows3D > 0 && data3D != null) {
+            System.arraycopy(data3D, 0, table, 0, Math.min(rows3D * 3, table.length));
+        }
+        size3D = n;
+        data3D = table;
+    }
+
+    private int parseIntArg(int min, int max) throws IOException {
+        int c = skipBlanks();
+        if (c < '0' || c > '9') throw error("Missing size value");
+        long v = 0;
+        while ((c = peek()) >= '0' && c <= '9') {
+            v = Math.min(v * 10 + (c - '0'), Integer.MAX_VALUE);
+            pos++;
+        }
+        if (v < min || v > max) throw error("LUT size out of range: " + v);
+        return (int) v;
+    }
+
+    private float parseFloatArg() throws IOException {
+        int c = skipBlanks();
+        if (c == -1 || c == '\n') throw error("Missing value");
+        return parseFloat();
+    }
+
+    private void parseTriple(float[] out) throws IOException {
+        out[0] = parseFloatArg();
+        out[1] = parseFloatArg();
+        out[2] = parseFloatArg();
+    }
+
+    private String readTitle() throws IOException {
+        skipBlanks();
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = peek()) != -1 && c != '\n') { sb.append((char) c); pos++; }
+        String s = sb.toString().trim();
+        if (s.length() >= 2 && s.charAt(0) == '"' && s.charAt(s.length() - 1) == '"') {
+            s = s.substring(1, s.length() - 1);
+        }
+        return s;
+    }
+
+    private boolean is(int len, String keyword) {
+        if (len != keyword.length()) return false;
+        for (int i = 0; i < len; i++) {
+            int a = word[i];
+            if (a >= 'a' && a <= 'z') a -= 32;
+            if (a != keyword.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // ---------- Float parsing ----------
+    /** Parses one token at the current position. Caller guarantees it is not blank/EOL. */
+    private float parseFloat() throws IOException {
+        int c = peek();
+        boolean neg = false;
+        if (c == '-' || c == '+') { neg = (c == '-'); pos++; c = peek(); }
+
+        long mant = 0;
+        int digits = 0, exp10 = 0;
+        boolean any = false;
+        while (c >= '0' && c <= '9') {
+            any = true;
+            if (digits < 18) { mant = mant * 10 + (c - '0'); if (mant != 0) digits++; }
+            else exp10++;
+            pos++; c = peek();
+        }
+        if (c == '.') {
+            pos++; c = peek();
+            while (c >= '0' && c <= '9') {
+                any = true;
+                if (digits < 18) { mant = mant * 10 + (c - '0'); if (mant != 0) digits++; exp10--; }
+                pos++; c = peek();
+            }
+        }
+        if (!any) throw error("Malformed number");
+
+        if (c == 'e' || c == 'E') {
+            pos++; c = peek();
+            boolean eneg = false;
+            if (c == '-' || c == '+') { eneg = (c == '-'); pos++; c = peek(); }
+            if (c < '0' || c > '9') throw error("Malformed exponent");
+            int e = 0;
+            while (c >= '0' && c <= '9') { e = Math.min(e * 10 + (c - '0'), 9999); pos++; c = peek(); }
+            exp10 += eneg ? -e : e;
+        }
+        if (c != -1 && c != '\n' && !isBlank(c)) throw error("Malformed number");
+
+        double v = mant;
+        if (mant != 0 && exp10 != 0) {
+            if (exp10 > 0) v = (exp10 < POW10.length) ? v * POW10[exp10] : v * Math.pow(10, exp10);
+            else v = (-exp10 < POW10.length) ? v / POW10[-exp10] : v / Math.pow(10, -exp10);
+        }
+        return (float) (neg ? -v : v);
+    }
+
+    // ---------- Parallel data section ----------
+    /**
+     * Called at the first 3D data row. Splits the rest of the buffer on line boundaries,
+     * counts rows per chunk (pass 1), then parses every chunk straight into its row offset
+     * of the preallocated table (pass 2). Returns false to continue sequentially.
+     */
+    private boolean parseParallel() throws IOException {
+        allowParallel = false; // decide once
+        if (size3D <= 0 || rows3D != 0 || (size1D > 0 && rows1D < size1D)) return false;
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (cores < 2) return false;
+
+        final ByteBuffer region = remainingRegion();
+        final int start = region.position(), end = region.limit();
+        if (end - start < PARALLEL_MIN_BYTES) return false;
+
+        int chunks = Math.max(2, Math.min(cores * 2, (end - start) / PARALLEL_CHUNK_BYTES));
+        int[] bounds = splitOnLines(region, start, end, chunks);
+        int n = bounds.length - 1;
+
+        // Pass 1: rows + newlines per chunk
+        final int[] rows = new int[n], lines = new int[n];
+        boolean plain = ForkJoinPool.commonPool().invoke(new ChunkTask(region, bounds, 0, n, rows, lines, null, 0, null));
+        if (!plain) return false; // keyword after data: let the sequential path handle it
+
+        int[] rowBase = new int[n], lineBase = new int[n];
+        int totalRows = 0, totalLines = line;
+        for (int i = 0; i < n; i++) {
+            rowBase[i] = totalRows;  totalRows += rows[i];
+            lineBase[i] = totalLines; totalLines += lines[i];
+        }
+
+        // Pass 2: parse into the shared table
+        try {
+            ForkJoinPool.commonPool().invoke(new ChunkTask(region, bounds, 0, n, rowBase, lineBase, data3D, size3D, rows));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        rows3D = totalRows;
+        line = totalLines;
+        return true;
+    }
+
+    /** Everything from the current read position to the end of the source. */
+    private ByteBuffer remainingRegion() {
+        if (src == null) return ByteBuffer.wrap(buf, pos, lim - pos);
+        ByteBuffer d = src.duplicate();
+        d.position(src.position() - (lim - pos));
+        return d;
+    }
+
+    private static int[] splitOnLines(ByteBuffer b, int start, int end, int chunks) {
+        int[] tmp = new int[chunks + 1];
+        int count = 0;
+        tmp[count++] = start;
+        long span = end - start;
+        for (int k = 1; k < chunks; k++) {
+            int i = Math.max((int) (start + span * k / chunks), tmp[count - 1]);
+            while (i < end && b.get(i) != '\n') i++;
+            if (i < end) i++;
+            if (i > tmp[count - 1] && i < end) tmp[count++] = i;
+        }
+        tmp[count++] = end;
+        int[] out = new int[count];
+        System.arraycopy(tmp, 0, out, 0, count);
+        return out;
+    }
+
+    /** Counts rows/newlines in [a, b); returns -1 if a keyword line is found. */
+    private static int countRows(ByteBuffer b, int a, int end, int[] linesOut, int slot) {
+        int rows = 0, lines = 0, i = a;
+        while (i < end) {
+            int c = b.get(i);
+            while (isBlank(c) && ++i < end) c = b.get(i);
+            if (i >= end) break;
+            if (c == '\n') { lines++; i++; continue; }
+            if (isRowStart(c)) rows++;
+            else if (c != '#' && c != ';' && c != '/') return -1;
+            while (i < end && b.get(i) != '\n') i++;
+            if (i < end) { lines++; i++; }
+        }
+        linesOut[slot] = lines;
+        return rows;
+    }
+
+    /** Pass 1 when {@code table} is null (fills rows/lines), pass 2 otherwise (rows/lines are bases). */
+    private static final class ChunkTask extends RecursiveTask<Boolean> {
+        private static final long serialVersionUID = 1L;
+
+        final ByteBuffer region; final int[] bounds; final int lo, hi;
+        final int[] rowsOrBase, linesOrBase; final float[] table; final int size; final int[] expectRows;
+
+        ChunkTask(ByteBuffer region, int[] bounds, int lo, int hi, int[] rowsOrBase, int[] linesOrBase,
+                  float[] table, int size, int[] expectRows) {
+            this.region = region; this.bounds = bounds; this.lo = lo; this.hi = hi;
+            this.rowsOrBase = rowsOrBase; this.linesOrBase = linesOrBase;
+            this.table = table; this.size = size; this.expectRows = expectRows;
+        }
+
+        @Override protected Boolean compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                ChunkTask left = new ChunkTask(region, bounds, lo, mid, rowsOrBase, linesOrBase, table, size, expectRows);
+                ChunkTask right = new ChunkTask(region, bounds, mid, hi, rowsOrBase, linesOrBase, table, size, expectRows);
+                left.fork();
+                boolean r = right.compute();
+                return left.join() && r;
+            }
+            if (table == null) {
+                int rows = countRows(region, bounds[lo], bounds[lo + 1], linesOrBase, lo);
+                if (rows < 0) return false;
+                rowsOrBase[lo] = rows;
+                return true;
+            }
+            try {
+                parseChunk();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }
+
+        private void parseChunk() throws IOException {
+            ByteBuffer slice = region.duplicate();
+            slice.limit(bounds[lo + 1]).position(bounds[lo]);
+            byte[] chunk = slice.hasArray() ? null : acquireChunk();
+            try {
+                CubeParser p = (chunk == null)
+                        ? new CubeParser(null, null, slice.array(), slice.arrayOffset() + slice.position(),
+                                         slice.arrayOffset() + slice.limit())
+                        : new CubeParser(null, slice, chunk, 0, 0);
+                p.size3D = size;
+                p.data3D = table;
+                p.rows3D = rowsOrBase[lo];
+                p.line = linesOrBase[lo];
+                int c;
+                while ((c = p.skipBlanks()) != -1) {
+                    if (c == '\n') { p.pos++; p.line++; continue; }
+                    if (isRowStart(c)) { p.parseRow(); continue; }
+                    p.skipLine(); // comment (pass 1 rejected keywords)
+                }
+                if (p.rows3D - rowsOrBase[lo] != expectRows[lo]) throw p.error("Row count changed between passes");
+            } finally {
+                if (chunk != null) releaseChunk(chunk);
+            }
+        }
+    }
+
+    // ---------- Byte source ----------
+    private int peek() throws IOException {
+        if (pos >= lim && !fill()) return -1;
+        return buf[pos] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        if (in == null && src == null) return false; // in-place heap array: nothing more to read
+        pos = 0;
+        lim = 0;
+        if (src != null) {
+            int n = Math.min(buf.length, src.remaining());
+            if (n <= 0) return false;
+            src.get(buf, 0, n);
+            lim = n;
+            return true;
+        }
+        int n;
+        do { n = in.read(buf, 0, buf.length); } while (n == 0);
+        if (n < 0) return false;
+        lim = n;
+        return true;
+    }
+
+    /** Skips spaces, tabs and CR; returns the next byte without consuming it. */
+    private int skipBlanks() throws IOException {
+        int c;
+        while ((c = peek()) != -1 && isBlank(c)) pos++;
+        return c;
+    }
+
+    /** Consumes up to and including the next LF. */
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = peek()) != -1) {
+            pos++;
+            if (c == '\n') { line++; return; }
+        }
+    }
+
+    private void skipBom() throws IOException {
+        if (peek() == 0xEF && pos + 2 < lim && (buf[pos + 1] & 0xFF) == 0xBB && (buf[pos + 2] & 0xFF) == 0xBF) {
+            pos += 3;
+        }
+    }
+
+    private static boolean isBlank(int c) { return c == ' ' || c == '\t' || c == '\r' || c == '\f'; }
+
+    private static boolean isRowStart(int c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+    }
+
+    private static float[] copyOf(float[] a, int newLen, int used) {
+        float[] out = new float[newLen];
+        System.arraycopy(a, 0, out, 0, used);
+        return out;
+    }
+
+    private CubeParseException error(String msg) {
+        return CubeParseException.atLine(msg, line);
+    }
+}
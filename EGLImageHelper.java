@@ -28,7 +28,7 @@ public class EGLImageHelper {
             EGL14.EGL_CONTEXT_CLIENT_VERSION, 2,
             EGL14.EGL_NONE
         };
-        context = EGL14.eglCreateContext(display, configs[0], EGL14.EGL_NO_CONTEXT, contextAttribs, 0);
+        context = EglShareGroup.createContext(display, configs[0], contextAttribs);
         int[] surfaceAttribs = {
             EGL14.EGL_WIDTH, width,
             EGL14.EGL_HEIGHT, height,
@@ -39,6 +39,7 @@ public class EGLImageHelper {
     }
 
     public void release() {
+        LutTextureCache.onContextDestroyed(context);
         EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
         EGL14.eglDestroySurface(display, surface);
         EGL14.eglDestroyContext(display, context);
@@ -0,0 +1,95 @@
+// File: EglShareGroup.java
+package com.squeezer.app;
+
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.util.Log;
+
+import java.util.ArrayList;
+
+/**
+ * App-wide EGL share group for preview, image export and video export:
+ *  - The first context (usually the preview's GLSurfaceView context) becomes the group root via adopt()
+ *  - Exporters create their contexts with createContext(), sharing with a live member
+ *  - Members share textures, so LutTextureCache keeps one cache for the whole group (programs stay
+ *    per context, see ShaderPrograms):
+ *    an export started right after previewing a look reuses the preview's LUT textures
+ *  - The group lives while any member does; when the last one leaves, a new root can be adopted
+ */
+public final class EglShareGroup {
+    private static final String TAG = "EglShareGroup";
+
+    /** LutTextureCache registry key for the group (instead of a single EGLContext). */
+    static final Object KEY = new Object();
+
+    private static final ArrayList<EGLContext> sMembers = new ArrayList<>();
+    private static EGLDisplay sDisplay;
+
+    private EglShareGroup() {}
+
+    // ---------- Membership ----------
+    /**
+     * Register a context that was created without sharing (e.g. by GLSurfaceView). It becomes the root
+     * when the group is empty; otherwise it stays private (its objects can't be shared after the fact).
+     */
+    public static synchronized boolean adopt(EGLContext ctx, EGLDisplay display) {
+        if (ctx == null || ctx.equals(EGL14.EGL_NO_CONTEXT)) return false;
+        if (sMembers.contains(ctx)) return true;
+        if (!sMembers.isEmpty()) {
+            Log.w(TAG, "Group already has " + sMembers.size() + " member(s); context stays private");
+            return false;
+        }
+        sDisplay = display;
+        sMembers.add(ctx);
+        return true;
+    }
+
+    /**
+     * eglCreateContext sharing with the group (joins it), or a private context when the group is empty,
+     * on another display, or the driver refuses to share. Returns EGL_NO_CONTEXT only if both fail.
+     */
+    public static EGLContext createContext(EGLDisplay display, EGLConfig config, int[] attribs) {
+        EGLContext share = shareContext(display);
+        if (share != EGL14.EGL_NO_CONTEXT) {
+            EGLContext ctx = EGL14.eglCreateContext(display, config, share, attribs, 0);
+            if (ctx != null && ctx != EGL14.EGL_NO_CONTEXT) {
+                synchronized (EglShareGroup.class) { sMembers.add(ctx); }
+                return ctx;
+            }
+            Log.w(TAG, "Shared context refused (0x" + Integer.toHexString(EGL14.eglGetError()) + "); using a private one");
+        }
+        EGLContext ctx = EGL14.eglCreateContext(display, config, EGL14.EGL_NO_CONTEXT, attribs, 0);
+        if (ctx != null && ctx != EGL14.EGL_NO_CONTEXT && share == EGL14.EGL_NO_CONTEXT) {
+            adopt(ctx, display); // empty group: this one is the new root
+        }
+        return ctx;
+    }
+
+    /** Removes a context (call before eglDestroyContext); true if it was a member. */
+    static synchronized boolean leave(EGLContext ctx) {
+        boolean was = ctx != null && sMembers.remove(ctx);
+        if (sMembers.isEmpty()) sDisplay = null;
+        return was;
+    }
+
+    public static synchronized boolean isMember(EGLContext ctx) {
+        return ctx != null && sMembers.contains(ctx);
+    }
+
+    public static synchronized boolean isEmpty() {
+        return sMembers.isEmpty();
+    }
+
+    /** More than one live member: uploads must be finished before another context samples them. */
+    static synchronized boolean isShared() {
+        return sMembers.size() > 1;
+    }
+
+    // ---------- Helpers ----------
+    private static synchronized EGLContext shareContext(EGLDisplay display) {
+        if (sMembers.isEmpty() || sDisplay == null || !sDisplay.equals(display)) return EGL14.EGL_NO_CONTEXT;
+        return sMembers.get(0);
+    }
+}
@@ -0,0 +1,366 @@
+// File: ExportPipeline.java
+package com.squeezer.app;
+
+import android.graphics.SurfaceTexture;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Callback-driven decode → GL → encode engine for LUTProcessor exports (MediaCodec.setCallback):
+ *  - Codec events only enqueue work: free decoder inputs and decoded frames go through bounded queues,
+ *    so no stage polls with a timeout and a codec gets new work as soon as it frees a buffer
+ *  - Feed thread: extractor samples → decoder input buffers, up to the sync sample that ends the range
+ *  - Decoder thread (HandlerThread): decoder callbacks and SurfaceTexture frame-available signals
+ *  - Render stage: the thread calling run(), which owns the EGL context: decoded frame → SurfaceTexture →
+ *    FrameRenderer → encoder input surface
+ *  - Encoder thread (HandlerThread): drains encoded output into a Sink (MuxerSink, or a segment file)
+ *    and reports progress
+ * Create before configure() (callbacks must be set first), start the codecs as usual, then run().
+ * One export per instance; release() after the codecs are stopped.
+ */
+final class ExportPipeline {
+    private static final String TAG = "ExportPipeline";
+    /** More than any codec hands out buffers, so enqueueing from a callback never blocks. */
+    private static final int QUEUE_DEPTH = 32;
+    private static final long POLL_MS = 100;
+    private static final long FRAME_TIMEOUT_MS = 2500;
+    private static final long STALL_TIMEOUT_MS = 10_000;
+    private static final long JOIN_TIMEOUT_MS = 1000;
+
+    /** Draws the frame just latched into the SurfaceTexture and swaps it to the encoder (render stage). */
+    interface FrameRenderer {
+        void render(long ptsUs) throws Exception;
+    }
+
+    /** Receives the encoded stream on the encoder thread: the output format first, then samples. */
+    interface Sink {
+        void onFormat(MediaFormat format) throws Exception;
+
+        /** {@code info.size > 0}, codec config already dropped; don't keep {@code data}. */
+        void onSample(ByteBuffer data, MediaCodec.BufferInfo info) throws Exception;
+    }
+
+    /** Presentation time of the last encoded video sample (encoder thread). */
+    interface ProgressListener {
+        void onProgress(long ptsUs);
+    }
+
+    /** A decoded output buffer waiting for the render stage. */
+    private static final class Decoded {
+        final int index;
+        final long ptsUs;
+        final boolean render;
+        final boolean eos;
+
+        Decoded(int index, MediaCodec.BufferInfo info) {
+            this.index = index;
+            this.ptsUs = info.presentationTimeUs;
+            this.render = info.size != 0;
+            this.eos = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+        }
+    }
+
+    private final MediaCodec decoder;
+    private final MediaCodec encoder;
+    private final HandlerThread decoderThread = new HandlerThread("ExportDecoder");
+    private final HandlerThread encoderThread = new HandlerThread("ExportEncoder");
+    private @Nullable Thread feedThread;
+
+    private final ArrayBlockingQueue<Integer> freeInputs = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+    private final ArrayBlockingQueue<Decoded> decoded = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private final CountDownLatch drained = new CountDownLatch(1);
+    private final Object frameLock = new Object();
+    private boolean frameAvailable; // guarded by frameLock
+    private volatile boolean feedDone;
+    private volatile boolean cancelled;
+    private long decoderWaitNanos; // render stage only
+
+    // Set by run() before the first frame reaches the encoder; used on the encoder thread
+    private volatile @Nullable Sink sink;
+    private volatile @Nullable ProgressListener progress;
+    private volatile long endUs = Long.MAX_VALUE;
+    private boolean formatSeen; // encoder thread only
+
+    ExportPipeline(MediaCodec decoder, MediaCodec encoder) {
+        this.decoder = decoder;
+        this.encoder = encoder;
+        decoderThread.start();
+        encoderThread.start();
+        decoder.setCallback(decoderCallback, new Handler(decoderThread.getLooper()));
+        encoder.setCallback(encoderCallback, new Handler(encoderThread.getLooper()));
+    }
+
+    // ---------- Run ----------
+    /**
+     * Runs the export to the encoder's end of stream on the calling (GL) thread. Renders the frames
+     * presented in [startUs, endUs): {@code extractor} must be positioned on the sync sample at startUs,
+     * and feeding stops at the first sync sample at or after endUs (Long.MAX_VALUE: end of track).
+     * Returns the number of frames rendered.
+     */
+    int run(MediaExtractor extractor, SurfaceTexture surfaceTexture, FrameRenderer renderer, Sink sink,
+            long startUs, long endUs, @Nullable ProgressListener progress) throws Exception {
+        this.sink = sink;
+        this.progress = progress;
+        this.endUs = endUs;
+        surfaceTexture.setOnFrameAvailableListener(st -> {
+            synchronized (frameLock) {
+                frameAvailable = true;
+                frameLock.notifyAll();
+            }
+        }, new Handler(decoderThread.getLooper()));
+
+        final long t0 = System.nanoTime();
+        feedThread = new Thread(() -> feed(extractor), "ExportFeed");
+        feedThread.start();
+
+        int frames = 0;
+        long lastFrameMs = System.currentTimeMillis();
+        while (true) {
+            long w0 = System.nanoTime();
+            Decoded f = decoded.poll(POLL_MS, TimeUnit.MILLISECONDS);
+            decoderWaitNanos += System.nanoTime() - w0;
+            checkError();
+            if (f == null) {
+                if (System.currentTimeMillis() - lastFrameMs > STALL_TIMEOUT_MS) {
+                    throw new TimeoutException("Decoder produced no frame for " + STALL_TIMEOUT_MS + " ms");
+                }
+                continue;
+            }
+            lastFrameMs = System.currentTimeMillis();
+            if (f.render && f.ptsUs >= startUs && f.ptsUs < endUs) {
+                synchronized (frameLock) { frameAvailable = false; }
+                decoder.releaseOutputBuffer(f.index, true);
+                w0 = System.nanoTime();
+                awaitFrame();
+                decoderWaitNanos += System.nanoTime() - w0;
+                surfaceTexture.updateTexImage();
+                renderer.render(f.ptsUs);
+                frames++;
+            } else {
+                decoder.releaseOutputBuffer(f.index, false);
+            }
+            if (f.eos) {
+                encoder.signalEndOfInputStream();
+                break;
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + STALL_TIMEOUT_MS;
+        while (!drained.await(POLL_MS, TimeUnit.MILLISECONDS)) {
+            checkError();
+            if (System.currentTimeMillis() > deadline) throw new TimeoutException("Encoder did not reach end of stream");
+        }
+        checkError();
+        logFps(startUs <= 0 && endUs == Long.MAX_VALUE ? "async" : "async " + startUs + ".." + endUs + " us",
+                frames, t0);
+        return frames;
+    }
+
+    /** Time run() spent waiting for decoded frames (codec-bound time for FramePacer). */
+    long decoderWaitNanos() { return decoderWaitNanos; }
+
+    /** Stops the feed and the callback threads; call after the codecs are stopped. */
+    void release() {
+        cancelled = true;
+        Thread feed = feedThread;
+        if (feed != null) {
+            feed.interrupt();
+            try {
+                feed.join(JOIN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        decoderThread.quitSafely();
+        encoderThread.quitSafely();
+    }
+
+    /**
+     * One line per export, so async and polling runs of the same clip can be compared in logcat. The async
+     * speed-up has not been measured on a device yet: export the same clip with
+     * LUTProcessor.setAsyncExport(true) and (false) and compare the two lines.
+     */
+    static void logFps(String mode, int frames, long startNanos) {
+        long ms = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        Log.i(TAG, String.format(Locale.US, "Export (%s): %d frames in %d ms, %.1f fps",
+                mode, frames, ms, frames * 1000f / ms));
+    }
+
+    // ---------- Stages ----------
+    private void feed(MediaExtractor extractor) {
+        try {
+            while (!cancelled && error.get() == null) {
+                Integer index = freeInputs.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (index == null) continue;
+                ByteBuffer buffer = decoder.getInputBuffer(index);
+                int size = buffer != null ? extractor.readSampleData(buffer, 0) : -1;
+                if (size >= 0 && extractor.getSampleTime() >= endUs
+                        && (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0) {
+                    size = -1; // the next segment starts here
+                }
+                if (size < 0) {
+                    decoder.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                    break;
+                }
+                long pts = extractor.getSampleTime();
+                decoder.queueInputBuffer(index, 0, size, pts, 0);
+                extractor.advance();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            fail(t);
+        } finally {
+            feedDone = true;
+        }
+    }
+
+    private void awaitFrame() throws InterruptedException, TimeoutException {
+        long deadline = System.currentTimeMillis() + FRAME_TIMEOUT_MS;
+        synchronized (frameLock) {
+            while (!frameAvailable) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) throw new TimeoutException("Decoded frame never reached the SurfaceTexture");
+                frameLock.wait(left);
+            }
+            frameAvailable = false;
+        }
+    }
+
+    // ---------- Codec callbacks ----------
+    private final MediaCodec.Callback decoderCallback = new MediaCodec.Callback() {
+        @Override public void onInputBufferAvailable(@NonNull MediaCodec codec, int index) {
+            if (feedDone) return; // past end of stream
+            enqueue(freeInputs, index);
+        }
+
+        @Override public void onOutputBufferAvailable(@NonNull MediaCodec codec, int index,
+                                                      @NonNull MediaCodec.BufferInfo info) {
+            enqueue(decoded, new Decoded(index, info));
+        }
+
+        @Override public void onError(@NonNull MediaCodec codec, @NonNull MediaCodec.CodecException e) {
+            fail(e);
+        }
+
+        @Override public void onOutputFormatChanged(@NonNull MediaCodec codec, @NonNull MediaFormat format) {
+            Log.d(TAG, "Decoder output format: " + format);
+        }
+    };
+
+    private final MediaCodec.Callback encoderCallback = new MediaCodec.Callback() {
+        @Override public void onInputBufferAvailable(@NonNull MediaCodec codec, int index) {
+            // Surface input: frames arrive through eglSwapBuffers
+        }
+
+        @Override public void onOutputBufferAvailable(@NonNull MediaCodec codec, int index,
+                                                      @NonNull MediaCodec.BufferInfo info) {
+            try {
+                ByteBuffer data = codec.getOutputBuffer(index);
+                if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) info.size = 0; // in the format
+                Sink s = sink;
+                if (info.size > 0 && data != null && s != null && formatSeen) {
+                    data.position(info.offset);
+                    data.limit(info.offset + info.size);
+                    s.onSample(data, info);
+                    ProgressListener p = progress;
+                    if (p != null) p.onProgress(info.presentationTimeUs);
+                }
+                codec.releaseOutputBuffer(index, false);
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) drained.countDown();
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+
+        @Override public void onError(@NonNull MediaCodec codec, @NonNull MediaCodec.CodecException e) {
+            fail(e);
+        }
+
+        @Override public void onOutputFormatChanged(@NonNull MediaCodec codec, @NonNull MediaFormat format) {
+            Sink s = sink;
+            if (s == null || formatSeen) {
+                fail(new IllegalStateException("Unexpected encoder format change: " + format));
+                return;
+            }
+            try {
+                s.onFormat(format);
+                formatSeen = true;
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+    };
+
+    // ---------- Sinks ----------
+    /**
+     * Writes the video track of a MediaMuxer, started on the format change. With an AudioInterleaver the
+     * source audio goes in alongside, up to each video sample's time; finish() writes the rest.
+     */
+    static final class MuxerSink implements Sink {
+        private final MediaMuxer muxer;
+        private final @Nullable AudioInterleaver audio;
+        private volatile int videoTrack = -1, audioTrack = -1;
+        private volatile boolean started;
+
+        MuxerSink(MediaMuxer muxer, @Nullable AudioInterleaver audio) {
+            this.muxer = muxer;
+            this.audio = audio;
+        }
+
+        @Override public void onFormat(MediaFormat format) {
+            if (started) throw new IllegalStateException("Muxer already started");
+            videoTrack = muxer.addTrack(format);
+            if (audio != null) audioTrack = muxer.addTrack(audio.format());
+            muxer.start();
+            started = true;
+        }
+
+        @Override public void onSample(ByteBuffer data, MediaCodec.BufferInfo info) {
+            if (!started) return;
+            muxer.writeSampleData(videoTrack, data, info);
+            if (audio != null) audio.writeUntil(muxer, audioTrack, info.presentationTimeUs);
+        }
+
+        /** Audio after the last video sample; call once the video is complete. */
+        void finish() {
+            if (started && audio != null) audio.writeUntil(muxer, audioTrack, Long.MAX_VALUE);
+        }
+
+        boolean started() { return started; }
+    }
+
+    // ---------- Errors ----------
+    private <T> void enqueue(ArrayBlockingQueue<T> queue, T item) {
+        if (!queue.offer(item)) fail(new IllegalStateException("Export queue overflow (" + QUEUE_DEPTH + ")"));
+    }
+
+    private void fail(Throwable t) {
+        if (error.compareAndSet(null, t)) Log.e(TAG, "Export pipeline failed", t);
+        drained.countDown();
+    }
+
+    private void checkError() throws Exception {
+        Throwable t = error.get();
+        if (t == null) return;
+        if (t instanceof Exception) throw (Exception) t;
+        throw new RuntimeException(t);
+    }
+}
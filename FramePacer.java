@@ -0,0 +1,85 @@
+// File: FramePacer.java
+package com.squeezer.app;
+
+import android.opengl.GLES20;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * CPU ↔ GPU pacing for encoder exports, instead of a glFinish after every frame:
+ *  - swap() queues a fence (GlFence, EGL 1.5 fence sync) behind each frame; the CPU only waits, on the
+ *    oldest fence, once more than {@code depth} frames are in flight
+ *  - Time blocked on fences is GPU-bound; time blocked in eglSwapBuffers (encoder surface full) plus the
+ *    decoder waits the caller reports is codec-bound. log() prints both once per export
+ *  - Without fence sync (API < 29, or eglCreateSync failing) every frame is glFinish'ed as before
+ * GL thread only; release() before the EGL context goes away.
+ */
+final class FramePacer {
+    private static final String TAG = "FramePacer";
+    /** Frames the GPU may lag behind the CPU; 2 keeps the encoder fed without queueing up latency. */
+    static final int DEFAULT_DEPTH = 2;
+
+    private final int depth;
+    private final ArrayDeque<GlFence> inFlight = new ArrayDeque<>();
+    private boolean useFences = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+    private long gpuWaitNanos, swapWaitNanos, decoderWaitNanos;
+    private int frames;
+
+    FramePacer(int depth) {
+        this.depth = Math.max(1, depth);
+    }
+
+    /** Swaps the frame just drawn to the encoder and fences it; waits only when too many are in flight. */
+    void swap(EGLHelper egl) {
+        long t0 = System.nanoTime();
+        egl.swapBuffers();
+        long t1 = System.nanoTime();
+        swapWaitNanos += t1 - t0;
+
+        if (useFences) {
+            GlFence fence = GlFence.create(); // null: no fence, and the frame has been finished
+            if (fence != null) {
+                inFlight.addLast(fence);
+            } else {
+                useFences = false;
+            }
+        } else {
+            GLES20.glFinish();
+        }
+        while (inFlight.size() > depth) inFlight.removeFirst().waitComplete();
+        gpuWaitNanos += System.nanoTime() - t1;
+        frames++;
+    }
+
+    /** Time the render stage spent waiting for decoded frames (counted as codec-bound). */
+    void addDecoderWait(long nanos) {
+        decoderWaitNanos += nanos;
+    }
+
+    /** Waits for every frame still in flight (end of export). */
+    void finish() {
+        long t0 = System.nanoTime();
+        while (!inFlight.isEmpty()) inFlight.removeFirst().waitComplete();
+        gpuWaitNanos += System.nanoTime() - t0;
+    }
+
+    /** Drops pending fences without waiting (error paths). */
+    void release() {
+        while (!inFlight.isEmpty()) inFlight.removeFirst().destroy();
+    }
+
+    /** "gpu X ms, codec Y ms (decoder D, encoder E) → GPU-bound" for this export. */
+    void log(String mode) {
+        long gpuMs = gpuWaitNanos / 1_000_000;
+        long decoderMs = decoderWaitNanos / 1_000_000;
+        long encoderMs = swapWaitNanos / 1_000_000;
+        long codecMs = decoderMs + encoderMs;
+        Log.i(TAG, String.format(Locale.US,
+                "Export (%s): %d frames, depth %d%s: gpu wait %d ms, codec wait %d ms (decoder %d, encoder %d) → %s-bound",
+                mode, frames, depth, useFences ? "" : " (glFinish)", gpuMs, codecMs, decoderMs, encoderMs,
+                gpuMs > codecMs ? "GPU" : "codec"));
+    }
+}
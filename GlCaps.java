@@ -0,0 +1,85 @@
+// File: GlCaps.java
+package com.squeezer.app;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Capabilities of one EGL context (or share group), probed once when its LutTextureCache is created:
+ *  - texture3D: GLES 3 with GL_OES_EGL_image_external_essl3, so LUT cubes are GL_TEXTURE_3D and sampled
+ *    with one hardware-trilinear texture() next to the video frame in an ESSL 3.00 program;
+ *    otherwise cubes stay 2D strips (ES2 path)
+ *  - lutFormat: the most precise filterable LUT texel format (RGBA16F on GLES 3, half float or 10-bit
+ *    packed through ES2 extensions, else RGBA8)
+ * Contexts are still created as ES2; Android hands out the highest compatible version, which is what
+ * GL_VERSION reports here.
+ */
+final class GlCaps {
+    private static final String TAG = "GlCaps";
+
+    final int majorVersion;
+    final boolean texture3D;
+    final int max3DTextureSize;
+    final LutTexelFormat lutFormat;
+
+    private GlCaps(int majorVersion, boolean texture3D, int max3DTextureSize, LutTexelFormat lutFormat) {
+        this.majorVersion = majorVersion;
+        this.texture3D = texture3D;
+        this.max3DTextureSize = max3DTextureSize;
+        this.lutFormat = lutFormat;
+    }
+
+    /** Probes the context current on this thread. */
+    static GlCaps probe() {
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        String ext = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+        Set<String> extensions = new HashSet<>(Arrays.asList((ext != null ? ext : "").trim().split("\\s+")));
+        int major = parseMajor(version);
+        boolean essl3External = extensions.contains("GL_OES_EGL_image_external_essl3");
+
+        int max3D = 0;
+        if (major >= 3) {
+            int[] v = new int[1];
+            GLES20.glGetIntegerv(GLES30.GL_MAX_3D_TEXTURE_SIZE, v, 0);
+            max3D = v[0];
+        }
+        GlCaps caps = new GlCaps(major, major >= 3 && essl3External && max3D >= 2, max3D,
+                lutFormatFor(major, extensions));
+        Log.d(TAG, "\"" + version + "\": " + caps);
+        return caps;
+    }
+
+    /** Whether a cube of {@code size} per axis is uploaded as a 3D texture here. */
+    boolean use3D(int size) {
+        return texture3D && size <= max3DTextureSize;
+    }
+
+    /** RGBA16F is core (and filterable) in GLES 3; ES2 needs the half float + linear filtering pair. */
+    private static LutTexelFormat lutFormatFor(int major, Set<String> extensions) {
+        if (major >= 3) return LutTexelFormat.HALF_FLOAT;
+        if (extensions.contains("GL_OES_texture_half_float")
+                && extensions.contains("GL_OES_texture_half_float_linear")) {
+            return LutTexelFormat.HALF_FLOAT_OES;
+        }
+        if (extensions.contains("GL_EXT_texture_type_2_10_10_10_REV")) return LutTexelFormat.RGB10_A2;
+        return LutTexelFormat.RGBA8;
+    }
+
+    /** "OpenGL ES 3.2 V@..." → 3; 2 when unknown. */
+    private static int parseMajor(String version) {
+        final String prefix = "OpenGL ES ";
+        if (version == null || !version.startsWith(prefix) || version.length() <= prefix.length()) return 2;
+        char c = version.charAt(prefix.length());
+        return Character.isDigit(c) ? c - '0' : 2;
+    }
+
+    @Override public String toString() {
+        return "GlCaps{ES " + majorVersion + ", texture3D=" + texture3D + ", max3D=" + max3DTextureSize
+                + ", lutFormat=" + lutFormat + "}";
+    }
+}
@@ -0,0 +1,90 @@
+// File: GlFence.java
+package com.squeezer.app;
+
+import android.opengl.EGL14;
+import android.opengl.EGL15;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLSync;
+import android.opengl.GLES20;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+/**
+ * GPU fence for handing textures uploaded on one EglShareGroup context to another:
+ *  - create() right after the upload, on the producing thread (EGL 1.5 fence sync + glFlush, API 29+);
+ *    without fence support it falls back to glFinish and returns null (already complete)
+ *  - isSignaled() never blocks (render thread polls it per frame); await() blocks (loader / exporters)
+ *  - The producing context never waits on its own fence (its commands are already ordered), except through
+ *    waitComplete(), which FramePacer uses to bound the frames in flight
+ * The sync object is destroyed as soon as it is seen signaled.
+ */
+final class GlFence {
+    private static final String TAG = "GlFence";
+    private static final long AWAIT_TIMEOUT_NS = 2_000_000_000L;
+
+    private final EGLDisplay display;
+    private final EGLContext producer;
+    private @Nullable EGLSync sync;
+
+    private GlFence(EGLDisplay display, EGLContext producer, EGLSync sync) {
+        this.display = display;
+        this.producer = producer;
+        this.sync = sync;
+    }
+
+    /** Fence after the commands issued so far on the current context, or null once they are finished. */
+    static @Nullable GlFence create() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            EGLDisplay display = EGL14.eglGetCurrentDisplay();
+            EGLSync sync = EGL15.eglCreateSync(display, EGL15.EGL_SYNC_FENCE, new long[]{ EGL14.EGL_NONE }, 0);
+            if (sync != null && !sync.equals(EGL15.EGL_NO_SYNC)) {
+                GLES20.glFlush(); // the fence must reach the GPU before another context can see it signal
+                return new GlFence(display, EGL14.eglGetCurrentContext(), sync);
+            }
+            Log.w(TAG, "eglCreateSync failed (0x" + Integer.toHexString(EGL14.eglGetError()) + "); using glFinish");
+        }
+        GLES20.glFinish();
+        return null;
+    }
+
+    /** True once the GPU has passed the fence (non-blocking). */
+    synchronized boolean isSignaled() {
+        if (sync == null) return true;
+        int r = EGL15.eglClientWaitSync(display, sync, 0, 0);
+        if (r == EGL15.EGL_TIMEOUT_EXPIRED) return false;
+        if (r != EGL15.EGL_CONDITION_SATISFIED) {
+            Log.w(TAG, "eglClientWaitSync failed (0x" + Integer.toHexString(EGL14.eglGetError()) + ")");
+        }
+        destroy(); // signaled, or broken: don't keep a consumer waiting on it forever
+        return true;
+    }
+
+    /** Blocks until the fence has signaled; returns at once on the producing context. */
+    synchronized void await() {
+        if (sync == null || producer.equals(EGL14.eglGetCurrentContext())) return;
+        int r = EGL15.eglClientWaitSync(display, sync, 0, AWAIT_TIMEOUT_NS);
+        if (r != EGL15.EGL_CONDITION_SATISFIED) {
+            Log.w(TAG, "Fence wait ended with 0x" + Integer.toHexString(r) + "; continuing");
+        }
+        destroy();
+    }
+
+    /** Blocks until the GPU has passed the fence, on any context (CPU ↔ GPU pacing). */
+    synchronized void waitComplete() {
+        if (sync == null) return;
+        int r = EGL15.eglClientWaitSync(display, sync, EGL15.EGL_SYNC_FLUSH_COMMANDS_BIT, AWAIT_TIMEOUT_NS);
+        if (r != EGL15.EGL_CONDITION_SATISFIED) {
+            Log.w(TAG, "Fence wait ended with 0x" + Integer.toHexString(r) + "; continuing");
+        }
+        destroy();
+    }
+
+    synchronized void destroy() {
+        if (sync == null) return;
+        EGL15.eglDestroySync(display, sync);
+        sync = null;
+    }
+}
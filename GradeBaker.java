@@ -0,0 +1,248 @@
+// File: GradeBaker.java
+package com.squeezer.app;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Folds the LUT and every per-pixel-independent grade slider into one 3D LUT, so shaders do a single
+ * LUT fetch per pixel instead of the full grade math:
+ *  - baked(y) = grade(cube(y)) on a size³ lattice: 3D LUT (trilinear, like the shaders sample it), then
+ *    exposure, temp / tint, vibrance, contrast, saturation, tint and highlight roll-off, in the order of
+ *    ShaderPrograms' GRADE stage
+ *  - A 1D curve / shaper stays a separate texture in front of the baked cube (y = curve(x)): shapers put
+ *    the lattice where the cube needs it, baking them into a uniform lattice would lose that
+ *  - Vignette depends on the pixel position and stays in the shader. The baked cube is stored clamped to
+ *    0..1 and the shader only clamps after the vignette, so canBake() is false while a vignette is on:
+ *    clamp(grade)·vig would darken highlights that clamp(grade·vig) keeps
+ *  - Incremental: the LUT stage is rebuilt only when the LUT changes, the grade stage only when a
+ *    parameter changes; update() is a no-op otherwise
+ * Plain CPU work (any thread, no GL); BakedLutTexture uploads the table.
+ */
+public final class GradeBaker {
+    private static final String TAG = "GradeBaker";
+
+    /** Lattice for grade-only bakes and the minimum for LUT bakes (the grade curves need it). */
+    public static final int MIN_SIZE = 33;
+
+    /** Slider values as the shaders use them (contrast / saturation are absolute, 1 = neutral). */
+    public static final class Grade {
+        public final float exposure, temp, tintGM, vibrance, contrast, saturation, tint, highlightRoll;
+
+        public Grade(float exposure, float temp, float tintGM, float vibrance,
+                     float contrast, float saturation, float tint, float highlightRoll) {
+            this.exposure = exposure;
+            this.temp = temp;
+            this.tintGM = tintGM;
+            this.vibrance = vibrance;
+            this.contrast = contrast;
+            this.saturation = saturation;
+            this.tint = tint;
+            this.highlightRoll = highlightRoll;
+        }
+
+        /** All sliders at rest: the grade stage is the identity. */
+        public boolean isNeutral() {
+            return exposure == 0f && temp == 0f && tintGM == 0f && vibrance == 0f
+                    && contrast == 1f && saturation == 1f && tint == 0f && highlightRoll <= 0f;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Grade)) return false;
+            Grade g = (Grade) o;
+            return exposure == g.exposure && temp == g.temp && tintGM == g.tintGM && vibrance == g.vibrance
+                    && contrast == g.contrast && saturation == g.saturation && tint == g.tint
+                    && highlightRoll == g.highlightRoll;
+        }
+
+        @Override public int hashCode() {
+            int h = Float.floatToIntBits(exposure);
+            h = 31 * h + Float.floatToIntBits(temp);
+            h = 31 * h + Float.floatToIntBits(tintGM);
+            h = 31 * h + Float.floatToIntBits(vibrance);
+            h = 31 * h + Float.floatToIntBits(contrast);
+            h = 31 * h + Float.floatToIntBits(saturation);
+            h = 31 * h + Float.floatToIntBits(tint);
+            return 31 * h + Float.floatToIntBits(highlightRoll);
+        }
+    }
+
+    private final int maxSize;          // cap for the LUT's own lattice (0 = full size)
+    private int size;
+    private @Nullable String baseHash;  // LUT the base lattice was built from ("" = none)
+    private float[] base;               // size³ RGB after the cube
+    private @Nullable FloatBuffer curve; // 1D stage of the LUT, uploaded as is
+    private int size1D;
+    private float[] baked;              // base after the grade stage
+    private @Nullable Grade bakedGrade;
+    private int generation;             // bumped by every update() that changed the table
+    private int curveGeneration;        // bumped when the curve changed
+
+    /** {@code maxSize}: lattice cap for large LUTs (LutResampler.PREVIEW_SIZE for preview, 0 for export). */
+    public GradeBaker(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    // ---------- Baking ----------
+    /**
+     * Rebakes what changed for {@code lut} (null = grade only) and {@code grade}. Returns true when
+     * the table changed (BakedLutTexture.upload() will refresh the texture).
+     */
+    public synchronized boolean update(@Nullable LutBinaryCache.Mapped lut, Grade grade) {
+        String hash = lut != null ? lut.hash : "";
+        boolean lutChanged = !hash.equals(baseHash);
+        if (!lutChanged && grade.equals(bakedGrade)) return false;
+
+        long t0 = System.nanoTime();
+        if (lutChanged) {
+            int s = Math.max(MIN_SIZE, lut != null && lut.has3D() ? LutResampler.sizeFor(lut.size, maxSize) : 0);
+            if (s != size || base == null) {
+                size = s;
+                base = new float[s * s * s * 3];
+                baked = new float[base.length];
+            }
+            buildBase(lut, size, base);
+            baseHash = hash;
+            curve = lut != null && lut.has1D() ? lut.curve : null;
+            size1D = curve != null ? lut.size1D : 0;
+            curveGeneration++;
+        }
+        applyGrade(base, baked, grade);
+        bakedGrade = grade;
+        generation++;
+        Log.d(TAG, "Baked " + size + "³ (" + (lutChanged ? "LUT + grade" : "grade") + ") in "
+                + ((System.nanoTime() - t0) / 1_000_000) + " ms");
+        return true;
+    }
+
+    /** Lattice size of the current bake (0 before the first update()). */
+    public synchronized int size() { return size; }
+
+    /** Current baked table (size³ RGB, red-fastest); owned by the baker. */
+    public synchronized float[] table() { return baked; }
+
+    /** 1D stage of the baked LUT (drawn in front of the cube), or null. */
+    synchronized @Nullable FloatBuffer curve() { return curve; }
+
+    /** Entries of curve(), 0 without one. */
+    synchronized int curveSize() { return size1D; }
+
+    /** Changes whenever update() changed the table; curveGeneration() when the curve changed. */
+    synchronized int generation() { return generation; }
+
+    synchronized int curveGeneration() { return curveGeneration; }
+
+    /**
+     * Whether the grade may be baked with this vignette strength: only without one, since the baked cube is
+     * clamped to 0..1 before the vignette instead of after it.
+     */
+    public static boolean canBake(float vignetteStrength) {
+        return vignetteStrength <= 0f;
+    }
+
+    /** base = cube(y) on the lattice (identity when lut is null or 1D-only). */
+    static void buildBase(@Nullable LutBinaryCache.Mapped lut, int size, float[] out) {
+        final float inv = 1f / (size - 1);
+        final float[] c = new float[3];
+        int o = 0;
+        for (int b = 0; b < size; b++) {
+            for (int g = 0; g < size; g++) {
+                for (int r = 0; r < size; r++, o += 3) {
+                    c[0] = r * inv; c[1] = g * inv; c[2] = b * inv;
+                    if (lut != null && lut.has3D()) sampleCube(lut.table, lut.size, c);
+                    out[o] = c[0]; out[o + 1] = c[1]; out[o + 2] = c[2];
+                }
+            }
+        }
+    }
+
+    /** out = grade(in) for every RGB triplet. */
+    static void applyGrade(float[] in, float[] out, Grade grade) {
+        if (grade.isNeutral()) {
+            System.arraycopy(in, 0, out, 0, in.length);
+            return;
+        }
+        final float[] c = new float[3];
+        for (int i = 0; i < in.length; i += 3) {
+            c[0] = in[i]; c[1] = in[i + 1]; c[2] = in[i + 2];
+            gradeRgb(c, grade);
+            out[i] = c[0]; out[i + 1] = c[1]; out[i + 2] = c[2];
+        }
+    }
+
+    // ---------- Reference math (mirrors the shader) ----------
+    /** ShaderPrograms' GRADE stage for one color, in place (unclamped). */
+    public static void gradeRgb(float[] c, Grade g) {
+        float r = c[0], gr = c[1], b = c[2];
+
+        float e = (float) Math.pow(2.0, g.exposure);
+        r *= e; gr *= e; b *= e;
+
+        r += g.temp * 0.08f;  b -= g.temp * 0.08f;     // warm / cool
+        r -= g.tintGM * 0.06f; gr += g.tintGM * 0.06f; // green / magenta
+
+        float l = luma(r, gr, b);
+        float sat = (float) Math.sqrt((r - l) * (r - l) + (gr - l) * (gr - l) + (b - l) * (b - l));
+        float k = clamp(g.vibrance * (1f - sat), -1f, 1f);
+        r = l + (r - l) * (1f + k); gr = l + (gr - l) * (1f + k); b = l + (b - l) * (1f + k);
+
+        r = (r - 0.5f) * g.contrast + 0.5f;
+        gr = (gr - 0.5f) * g.contrast + 0.5f;
+        b = (b - 0.5f) * g.contrast + 0.5f;
+
+        l = luma(r, gr, b);
+        r = l + (r - l) * g.saturation; gr = l + (gr - l) * g.saturation; b = l + (b - l) * g.saturation;
+
+        r += g.tint; gr += g.tint; b += g.tint;
+
+        if (g.highlightRoll > 0f) {
+            r = rollOff(r, g.highlightRoll); gr = rollOff(gr, g.highlightRoll); b = rollOff(b, g.highlightRoll);
+        }
+        c[0] = r; c[1] = gr; c[2] = b;
+    }
+
+    /** Trilinear lookup in a size³ red-fastest table, in place (input clamped like sampleLUT). */
+    public static void sampleCube(FloatBuffer table, int size, float[] c) {
+        final int n = size - 1;
+        float fr = clamp(c[0], 0f, 1f) * n, fg = clamp(c[1], 0f, 1f) * n, fb = clamp(c[2], 0f, 1f) * n;
+        int r0 = Math.min((int) fr, n - 1), g0 = Math.min((int) fg, n - 1), b0 = Math.min((int) fb, n - 1);
+        float dr = fr - r0, dg = fg - g0, db = fb - b0;
+        final int sg = size, sb = size * size;
+        int i000 = r0 + g0 * sg + b0 * sb;
+        for (int ch = 0; ch < 3; ch++) {
+            float c00 = lerp(table.get((i000) * 3 + ch),           table.get((i000 + 1) * 3 + ch), dr);
+            float c10 = lerp(table.get((i000 + sg) * 3 + ch),      table.get((i000 + sg + 1) * 3 + ch), dr);
+            float c01 = lerp(table.get((i000 + sb) * 3 + ch),      table.get((i000 + sb + 1) * 3 + ch), dr);
+            float c11 = lerp(table.get((i000 + sb + sg) * 3 + ch), table.get((i000 + sb + sg + 1) * 3 + ch), dr);
+            c[ch] = lerp(lerp(c00, c10, dg), lerp(c01, c11, dg), db);
+        }
+    }
+
+    /** Per-channel linear lookup in a 1D table of size1D RGB entries, in place (input clamped). */
+    public static void sampleCurve(FloatBuffer curve, int size1D, float[] c) {
+        final int n = size1D - 1;
+        for (int ch = 0; ch < 3; ch++) {
+            float p = clamp(c[ch], 0f, 1f) * n;
+            int i0 = Math.min((int) p, n - 1);
+            c[ch] = lerp(curve.get(i0 * 3 + ch), curve.get((i0 + 1) * 3 + ch), p - i0);
+        }
+    }
+
+    // ---------- Helpers ----------
+    private static float rollOff(float x, float amount) {
+        float t = clamp((x - 0.7f) / 0.3f, 0f, 1f);
+        t = t * t * (3f - 2f * t); // smoothstep(0.7, 1.0, x)
+        return lerp(x, 1f - (1f - x) * (1f - t), amount);
+    }
+
+    private static float luma(float r, float g, float b) {
+        return 0.2126f * r + 0.7152f * g + 0.0722f * b;
+    }
+
+    private static float lerp(float a, float b, float t) { return a + (b - a) * t; }
+
+    private static float clamp(float v, float lo, float hi) { return v < lo ? lo : (v > hi ? hi : v); }
+}
@@ -0,0 +1,162 @@
+// File: GradeUniforms.java
+package com.squeezer.app;
+
+import android.opengl.GLES20;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Typed uniform binder for the LUT / grade programs (ShaderPrograms variants):
+ *  - Locations (and the two vertex attributes) are resolved once per program, the first time use() sees it;
+ *    uniforms a variant leaves out resolve to -1 and are skipped
+ *  - A shadow copy of every value per program: setters only issue glUniform* when the value changed.
+ *    Uniform values are program state, so the shadow stays valid across glUseProgram switches
+ *  - Samplers, uMVPMatrix, LUT sizes, grade (video or image) and vignette; bind LUTs with LutTextures.bindTextures() +
+ *    setLut() (LutTextures.bind() would bypass the shadow)
+ * One binder per EGL context (program ids are per context); GL thread only.
+ */
+public final class GradeUniforms {
+    private static final int U_TEXTURE = 0, U_LUT = 1, U_CURVE = 2, U_LUT_SIZE = 3, U_CURVE_SIZE = 4,
+            U_TINT = 5, U_CONTRAST = 6, U_SATURATION = 7, U_EXPOSURE = 8, U_VIBRANCE = 9, U_TEMP = 10,
+            U_TINT_GM = 11, U_HIGHLIGHT_ROLL = 12, U_VIGNETTE_STRENGTH = 13, U_VIGNETTE_SOFTNESS = 14,
+            U_HUE_SHIFT = 15;
+    private static final String[] NAMES = {
+            "uTexture", "lutTexture", "curveTexture", "uLUTSize", "uCurveSize",
+            "uTint", "uContrast", "uSaturation", "uExposure", "uVibrance", "uTemp",
+            "uTintGM", "uHighlightRoll", "uVignetteStrength", "uVignetteSoftness", "uHueShift"
+    };
+
+    /** Locations and last values of one program. */
+    private static final class State {
+        final int program;
+        final int[] loc = new int[NAMES.length];
+        final float[] value = new float[NAMES.length];
+        final boolean[] valid = new boolean[NAMES.length];
+        final int mvpLoc, positionAttrib, texCoordAttrib;
+        final float[] mvp = new float[16];
+        boolean mvpValid;
+
+        State(int program) {
+            this.program = program;
+            for (int i = 0; i < NAMES.length; i++) loc[i] = GLES20.glGetUniformLocation(program, NAMES[i]);
+            mvpLoc = GLES20.glGetUniformLocation(program, "uMVPMatrix");
+            positionAttrib = GLES20.glGetAttribLocation(program, "aPosition");
+            texCoordAttrib = GLES20.glGetAttribLocation(program, "aTexCoord");
+        }
+    }
+
+    private final HashMap<Integer, State> states = new HashMap<>();
+    private @Nullable State current;
+    private int uploads, skipped;
+
+    // ---------- Program ----------
+    /** glUseProgram + makes {@code program} the target of the setters (locations resolved on first use). */
+    public GradeUniforms use(int program) {
+        GLES20.glUseProgram(program);
+        if (current != null && current.program == program) return this;
+        State s = states.get(program);
+        if (s == null) {
+            s = new State(program);
+            states.put(program, s);
+        }
+        current = s;
+        return this;
+    }
+
+    /** aPosition of the current program (-1 if absent). */
+    public int positionAttrib() { return state().positionAttrib; }
+
+    /** aTexCoord of the current program (-1 if absent). */
+    public int texCoordAttrib() { return state().texCoordAttrib; }
+
+    // ---------- Setters ----------
+    /** Source on unit 0, cube and curve on their LutTextures units. */
+    public void setSamplers() {
+        setInt(U_TEXTURE, 0);
+        setInt(U_LUT, LutTextures.CUBE_UNIT);
+        setInt(U_CURVE, LutTextures.CURVE_UNIT);
+    }
+
+    /** Cube / curve sizes for {@code lut} (textures are bound separately with bindTextures()). */
+    public void setLut(@Nullable LutTextures lut) {
+        set(U_LUT_SIZE, lut != null && lut.hasCube() ? lut.cubeSize : 2f);
+        set(U_CURVE_SIZE, lut != null && lut.hasCurve() ? lut.curveSize : 2f);
+    }
+
+    /** All grade parameters (contrast and saturation are absolute, 1 = neutral). */
+    public void setGrade(GradeBaker.Grade g) {
+        set(U_EXPOSURE, g.exposure);
+        set(U_TEMP, g.temp);
+        set(U_TINT_GM, g.tintGM);
+        set(U_VIBRANCE, g.vibrance);
+        set(U_CONTRAST, g.contrast);
+        set(U_SATURATION, g.saturation);
+        set(U_TINT, g.tint);
+        set(U_HIGHLIGHT_ROLL, g.highlightRoll);
+    }
+
+    /** ShaderPrograms.IMAGE_GRADE parameters (contrast and saturation absolute, hue shift 0 = neutral). */
+    public void setImageGrade(float hueShift, float contrast, float saturation) {
+        set(U_HUE_SHIFT, hueShift);
+        set(U_CONTRAST, contrast);
+        set(U_SATURATION, saturation);
+    }
+
+    public void setVignette(float strength, float softness) {
+        set(U_VIGNETTE_STRENGTH, strength);
+        set(U_VIGNETTE_SOFTNESS, softness);
+    }
+
+    public void setMvp(float[] mvp) {
+        State s = state();
+        if (s.mvpLoc < 0) return;
+        if (s.mvpValid && Arrays.equals(s.mvp, mvp)) {
+            skipped++;
+            return;
+        }
+        System.arraycopy(mvp, 0, s.mvp, 0, 16);
+        s.mvpValid = true;
+        GLES20.glUniformMatrix4fv(s.mvpLoc, 1, false, mvp, 0);
+        uploads++;
+    }
+
+    /** "programs=N uploads=U skipped=S" since creation. */
+    public String stats() {
+        return "programs=" + states.size() + " uploads=" + uploads + " skipped=" + skipped;
+    }
+
+    // ---------- Helpers ----------
+    private void set(int u, float v) {
+        State s = state();
+        if (s.loc[u] < 0) return;
+        if (s.valid[u] && s.value[u] == v) {
+            skipped++;
+            return;
+        }
+        s.value[u] = v;
+        s.valid[u] = true;
+        GLES20.glUniform1f(s.loc[u], v);
+        uploads++;
+    }
+
+    private void setInt(int u, int v) {
+        State s = state();
+        if (s.loc[u] < 0) return;
+        if (s.valid[u] && s.value[u] == v) {
+            skipped++;
+            return;
+        }
+        s.value[u] = v;
+        s.valid[u] = true;
+        GLES20.glUniform1i(s.loc[u], v);
+        uploads++;
+    }
+
+    private State state() {
+        if (current == null) throw new IllegalStateException("GradeUniforms: use(program) first");
+        return current;
+    }
+}
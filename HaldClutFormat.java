@@ -0,0 +1,92 @@
+// File: HaldClutFormat.java
+package com.squeezer.app;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Hald CLUT image (PNG): a level-L Hald is an L³ x L³ image holding an (L²)³ cube,
+ * pixels in row-major order with red varying fastest — the same order as .cube rows.
+ * One image decode instead of parsing N³ text rows (level 8 = 512x512 → 64³).
+ */
+final class HaldClutFormat implements LutFormat {
+    private static final byte[] PNG_MAGIC = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int MAX_LEVEL = 16; // 4096x4096 → 256³ (CubeParser's 3D limit)
+
+    @Override public String name() { return "hald"; }
+
+    @Override public String[] extensions() { return new String[]{ "png" }; }
+
+    @Override public boolean sniff(byte[] head, int len) {
+        if (len < PNG_MAGIC.length) return false;
+        for (int i = 0; i < PNG_MAGIC.length; i++) if (head[i] != PNG_MAGIC[i]) return false;
+        return true;
+    }
+
+    @Override public LutTable read(InputStream in) throws IOException {
+        return fromBitmap(BitmapFactory.decodeStream(in, null, decodeOptions()));
+    }
+
+    @Override public LutTable read(ByteBuffer buf) throws IOException {
+        if (buf.hasArray()) {
+            return fromBitmap(BitmapFactory.decodeByteArray(buf.array(), buf.arrayOffset() + buf.position(),
+                    buf.remaining(), decodeOptions()));
+        }
+        return read(LutFormats.asStream(buf));
+    }
+
+    @Override public LutInfo scanHeader(InputStream in) throws IOException {
+        BitmapFactory.Options o = new BitmapFactory.Options();
+        o.inJustDecodeBounds = true;
+        BitmapFactory.decodeStream(in, null, o);
+        int level = levelFor(o.outWidth, o.outHeight);
+        return new LutInfo(null, level * level, 0, new float[]{0f, 0f, 0f}, new float[]{1f, 1f, 1f});
+    }
+
+    // ---------- Decode ----------
+    private static BitmapFactory.Options decodeOptions() {
+        BitmapFactory.Options o = new BitmapFactory.Options();
+        o.inScaled = false;
+        o.inPremultiplied = false; // LUT entries, not colors: keep RGB exact
+        o.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        return o;
+    }
+
+    private static LutTable fromBitmap(Bitmap bmp) throws IOException {
+        if (bmp == null) throw new IOException("Hald CLUT: image could not be decoded");
+        try {
+            int w = bmp.getWidth(), h = bmp.getHeight();
+            int level = levelFor(w, h);
+            int size = level * level;
+            float[] table = new float[size * size * size * 3];
+            int[] row = new int[w];
+            final float k = 1f / 255f;
+            int o = 0;
+            for (int y = 0; y < h; y++) {
+                bmp.getPixels(row, 0, w, 0, y, w, 1);
+                for (int x = 0; x < w; x++) {
+                    int p = row[x];
+                    table[o++] = ((p >>> 16) & 0xFF) * k;
+                    table[o++] = ((p >>> 8) & 0xFF) * k;
+                    table[o++] = (p & 0xFF) * k;
+                }
+            }
+            return new LutTable(null, size, table, 0, null, new float[]{0f, 0f, 0f}, new float[]{1f, 1f, 1f});
+        } finally {
+            bmp.recycle();
+        }
+    }
+
+    /** Hald level L for a w x h image (w == h == L³), or an IOException. */
+    private static int levelFor(int w, int h) throws IOException {
+        if (w <= 0 || w != h) throw new IOException("Hald CLUT: expected a square image, got " + w + "x" + h);
+        for (int level = 2; level <= MAX_LEVEL; level++) {
+            if (level * level * level == w) return level;
+        }
+        throw new IOException("Hald CLUT: " + w + "x" + h + " is not a Hald level (L³ x L³, L ≤ " + MAX_LEVEL + ")");
+    }
+}
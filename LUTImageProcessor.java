@@ -13,6 +13,8 @@ import androidx.exifinterface.media.ExifInterface;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.IntBuffer;
@@ -52,7 +54,9 @@ public class LUTImageProcessor {
     }
 
     // ------------------------- Public API (advanced) -------------------------
-    // Matches the video pipeline semantics. Use this whenever available.
+    // Same image math as getPreviewBitmap (ShaderPrograms.IMAGE_GRADE): hue shift, saturation, contrast.
+    // exposure / vibrance / temp / greenMagenta / highlightRoll / vignette are video-only and ignored here,
+    // as the image shader always did.
     // tint/hueShift:  0.0 neutral
     // contrastDelta:  0.0 neutral  (shader uses 1.0 + contrastDelta)
     // saturationDelta:0.0 neutral  (shader uses 1.0 + saturationDelta)
@@ -78,8 +82,9 @@ public class LUTImageProcessor {
 
         int program = 0;
         int srcTexId = 0;
-        int lutTexId = 0;
+        LutTextures lut = null;
 
+        ProgramBinaryCache.init(context);
         try {
             // 1) Load + EXIF rotate
             rawBitmap = loadFullQualityBitmap(context, imageUri);
@@ -95,85 +100,36 @@ public class LUTImageProcessor {
             // 3) Upload image
             srcTexId = ShaderImageUtils.loadTexture(inputBitmap);
 
-            // 4) Build shader (same one you use for preview)
-            program = ShaderImageUtils.createProgram(
-                    ShaderImageUtils.getVertexShader(),
-                    ShaderImageUtils.getFragmentShader()
-            );
-            GLES20.glUseProgram(program);
+            // 4) Optional LUT (cube on unit 1, 1D curve on unit 2)
+            lut = hasLut(lutId) ? loadLutTextures(context, lutId) : null;
+            if (lut != null && lut.isEmpty()) lut = null;
+
+            // 5) Same generated program family as the video preview, with a sampler2D source and the image
+            //    grade (only the stages in use; cached per context, so not deleted here)
+            final float contrast = 1f + contrastDelta, saturation = 1f + saturationDelta;
+            program = ShaderPrograms.get(ShaderPrograms.imageFeatures(lut, tint, contrast, saturation));
+            GradeUniforms uniforms = new GradeUniforms();
+            uniforms.use(program);
             GLES20.glViewport(0, 0, width, height);
 
-            // 5) Bind source (unit 0)
+            // 6) Bind source (unit 0) and LUT
             GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
             GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, srcTexId);
-            set1i(GLES20.glGetUniformLocation(program, "uTexture"), 0);
-
-            // 6) Optional LUT bind (unit 1)
-            boolean wantLut = hasLut(lutId);
-            int uApplyLUT   = GLES20.glGetUniformLocation(program, "uApplyLUT");
-            int uLUTSize    = GLES20.glGetUniformLocation(program, "uLUTSize");
-            int uLUTSampler = GLES20.glGetUniformLocation(program, "lutTexture");
-
-            if (wantLut && uLUTSampler >= 0 && uApplyLUT >= 0) {
-                InputStream is = null;
-                try {
-                    is = openLutStream(context, lutId);
-                    if (is != null) {
-                        android.util.Pair<Integer, Integer> p = LUTLoader.loadCubeLUT(is);
-                        lutTexId = (p.first != null) ? p.first : 0;
-                        int lutSize = (p.second != null) ? p.second : 33;
-                        if (lutTexId != 0) {
-                            GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
-                            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, lutTexId);
-                            set1i(uLUTSampler, 1);
-                            set1f(uLUTSize, (float) lutSize);
-                            set1f(uApplyLUT, 1f);
-                        } else {
-                            set1f(uApplyLUT, 0f);
-                        }
-                    } else {
-                        set1f(uApplyLUT, 0f);
-                    }
-                } finally {
-                    if (is != null) try { is.close(); } catch (Throwable ignored) {}
-                }
-            } else {
-                set1f(uApplyLUT, 0f);
-            }
+            if (lut != null) lut.bindTextures();
+            uniforms.setSamplers();
+            uniforms.setLut(lut);
 
-            // 7) Grade uniforms
-            // Some shaders also have uApplyGrade; set it if present.
-            set1f(GLES20.glGetUniformLocation(program, "uApplyGrade"), 1f);
-            set1f(GLES20.glGetUniformLocation(program, "uContrast"),   1f + contrastDelta); // neutral = 1.0
-            set1f(GLES20.glGetUniformLocation(program, "uSaturation"), 1f + saturationDelta); // neutral = 1.0
-            // Your image shader calls it uHueShift; if you also support uTint, set both safely.
-            set1f(GLES20.glGetUniformLocation(program, "uHueShift"),   tint);
-            set1f(GLES20.glGetUniformLocation(program, "uTint"),       tint);
-
-            // Advanced (safe if not present in shader)
-            set1f(GLES20.glGetUniformLocation(program, "uExposure"),         exposure);
-            set1f(GLES20.glGetUniformLocation(program, "uVibrance"),         vibrance);
-            set1f(GLES20.glGetUniformLocation(program, "uTemp"),             temp);
-            set1f(GLES20.glGetUniformLocation(program, "uTintGM"),           greenMagenta);
-            set1f(GLES20.glGetUniformLocation(program, "uHighlightRoll"),    highlightRoll);
-            set1f(GLES20.glGetUniformLocation(program, "uVignetteStrength"), vignetteStrength);
-            set1f(GLES20.glGetUniformLocation(program, "uVignetteSoftness"), vignetteSoftness);
-
-            // 8) MVP (flip + fit)
+            // 7) Image grade (uniforms a variant leaves out are skipped)
+            uniforms.setImageGrade(tint, contrast, saturation);
+
+            // 8) MVP: identity. The flip is done on readback and the quad already fills the
+            //    same-size target (the old image vertex shader ignored uMVPMatrix).
             float[] mvp = new float[16];
             android.opengl.Matrix.setIdentityM(mvp, 0);
-            // GL origin flip so readback is upright
-            android.opengl.Matrix.scaleM(mvp, 0, 1f, -1f, 1f);
-
-            float imageAspect = (float) width / (float) height;
-            float sx = 1f, sy = 1f;
-            if (imageAspect > 1f) sy = 1f / imageAspect; else sx = imageAspect;
-            android.opengl.Matrix.scaleM(mvp, 0, sx, sy, 1f);
-            int uMVP = GLES20.glGetUniformLocation(program, "uMVPMatrix");
-            if (uMVP >= 0) GLES20.glUniformMatrix4fv(uMVP, 1, false, mvp, 0);
+            uniforms.setMvp(mvp);
 
             // 9) Draw
-            ShaderImageUtils.drawFullScreenQuad(program, mvp);
+            ShaderImageUtils.drawFullScreenQuad(program, null); // MVP already set
             GLES20.glFinish();
 
             // 10) Readback & save
@@ -192,14 +148,12 @@ public class LUTImageProcessor {
 
         } finally {
             // GL cleanup
-            if (program != 0) {
-                try { GLES20.glDeleteProgram(program); } catch (Throwable ignored) {}
-            }
+            // program is owned by ShaderPrograms (dropped with the context below)
             if (srcTexId != 0) {
                 try { int[] t = {srcTexId}; GLES20.glDeleteTextures(1, t, 0); } catch (Throwable ignored) {}
             }
-            if (lutTexId != 0) {
-                try { int[] t = {lutTexId}; GLES20.glDeleteTextures(1, t, 0); } catch (Throwable ignored) {}
+            if (lut != null) {
+                try { LutManager.releaseTextures(lut); } catch (Throwable ignored) {}
             }
             if (egl != null) {
                 try { egl.release(); } catch (Throwable ignored) {}
@@ -229,8 +183,9 @@ public class LUTImageProcessor {
         EGLImageHelper egl = null;
         int program = 0;
         int textureId = 0;
-        int lutTexId = 0;
+        LutTextures lut = null;
 
+        ProgramBinaryCache.init(context);
         try {
             // 1) Load source bitmap + correct EXIF
             Bitmap rawBitmap = loadFullQualityBitmap(context, imageUri);
@@ -246,72 +201,35 @@ public class LUTImageProcessor {
             // 3) Upload image as 2D texture
             textureId = ShaderImageUtils.loadTexture(inputBitmap);
 
-            // 4) Build shader program (supports LUT + grade uniforms)
-            program = ShaderImageUtils.createProgram(
-                    ShaderImageUtils.getVertexShader(),
-                    ShaderImageUtils.getFragmentShader()
-            );
-            GLES20.glUseProgram(program);
+            // 4) Optional LUT (supports null / "none" / asset:/file:/plain; 3D, 1D or shaper + 3D)
+            lut = hasLut(lutId) ? loadLutTextures(context, lutId) : null;
+            if (lut != null && lut.isEmpty()) lut = null;
+
+            // 5) Same program as processAdvanced: cube as a strip or sampler3D, whichever the cache
+            //    uploaded (owned by ShaderPrograms, not deleted here)
+            program = ShaderPrograms.get(ShaderPrograms.imageFeatures(lut, hueShift, contrastAbs, saturationAbs));
+            GradeUniforms uniforms = new GradeUniforms();
+            uniforms.use(program);
             GLES20.glViewport(0, 0, width, height);
 
-            // 5) Bind source texture (unit 0)
+            // 6) Bind source (unit 0) and LUT
             GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
             GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
-            set1i(GLES20.glGetUniformLocation(program, "uTexture"), 0);
-
-            // 6) Optional LUT (supports null / "none" / asset:/file:/plain)
-            boolean wantLut = hasLut(lutId);
-            int uApplyLUTLoc = GLES20.glGetUniformLocation(program, "uApplyLUT");
-            int uLUTSizeLoc  = GLES20.glGetUniformLocation(program, "uLUTSize");
-            int uLUTSampler  = GLES20.glGetUniformLocation(program, "lutTexture");
-
-            if (wantLut && uLUTSampler >= 0 && uApplyLUTLoc >= 0) {
-                InputStream is = null;
-                try {
-                    is = openLutStream(context, lutId);
-                    if (is != null) {
-                        android.util.Pair<Integer, Integer> p = LUTLoader.loadCubeLUT(is);
-                        lutTexId = (p.first != null) ? p.first : 0;
-                        int lutSize = (p.second != null) ? p.second : 33;
-                        if (lutTexId != 0) {
-                            GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
-                            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, lutTexId);
-                            set1i(uLUTSampler, 1);
-                            set1f(uLUTSizeLoc, (float) lutSize);
-                            set1f(uApplyLUTLoc, 1f);
-                        } else {
-                            set1f(uApplyLUTLoc, 0f);
-                        }
-                    } else {
-                        set1f(uApplyLUTLoc, 0f);
-                    }
-                } finally {
-                    if (is != null) try { is.close(); } catch (Throwable ignored) {}
-                }
-            } else {
-                set1f(uApplyLUTLoc, 0f);
-            }
+            if (lut != null) lut.bindTextures();
+            uniforms.setSamplers();
+            uniforms.setLut(lut);
 
-            // 7) Grade uniforms (preview uses ABSOLUTE values here)
-            set1f(GLES20.glGetUniformLocation(program, "uContrast"),   contrastAbs);    // 1.0 neutral
-            set1f(GLES20.glGetUniformLocation(program, "uSaturation"), saturationAbs);  // 1.0 neutral
-            set1f(GLES20.glGetUniformLocation(program, "uHueShift"),   hueShift);       // 0.0 neutral
+            // 7) Image grade (preview uses ABSOLUTE values here)
+            uniforms.setImageGrade(hueShift, contrastAbs, saturationAbs);
 
-            // 8) MVP (flip + fit)
+            // 8) MVP: identity, as in processAdvanced (the old image vertex shader ignored the flip + fit
+            //    matrix; the flip is done on readback)
             float[] mvpMatrix = new float[16];
             android.opengl.Matrix.setIdentityM(mvpMatrix, 0);
-            android.opengl.Matrix.scaleM(mvpMatrix, 0, 1f, -1f, 1f); // Flip Y
-
-            float imageAspect = (float) width / (float) height;
-            float scaleX = 1f, scaleY = 1f;
-            if (imageAspect > 1f) { scaleY = 1f / imageAspect; } else { scaleX = imageAspect; }
-            android.opengl.Matrix.scaleM(mvpMatrix, 0, scaleX, scaleY, 1f);
-
-            int uMVPLoc = GLES20.glGetUniformLocation(program, "uMVPMatrix");
-            if (uMVPLoc >= 0) GLES20.glUniformMatrix4fv(uMVPLoc, 1, false, mvpMatrix, 0);
+            uniforms.setMvp(mvpMatrix);
 
             // 9) Draw and flush
-            ShaderImageUtils.drawFullScreenQuad(program, mvpMatrix);
+            ShaderImageUtils.drawFullScreenQuad(program, null); // MVP already set
             GLES20.glFinish();
 
             // 10) Readback
@@ -335,9 +253,9 @@ public class LUTImageProcessor {
             return null;
         } finally {
             // Cleanup GL objects
-            if (program != 0)   try { GLES20.glDeleteProgram(program); } catch (Throwable ignored) {}
+            // program is owned by ShaderPrograms (dropped with the context below)
             if (textureId != 0) try { int[] t = {textureId}; GLES20.glDeleteTextures(1, t, 0); } catch (Throwable ignored) {}
-            if (lutTexId != 0)  try { int[] t = {lutTexId};  GLES20.glDeleteTextures(1, t, 0); } catch (Throwable ignored) {}
+            if (lut != null)    try { LutManager.releaseTextures(lut); } catch (Throwable ignored) {}
             if (egl != null)    try { egl.release(); } catch (Throwable ignored) {}
             if (surfaceTexture != null) try { surfaceTexture.release(); } catch (Throwable ignored) {}
         }
@@ -380,8 +298,22 @@ public class LUTImageProcessor {
         }
     }
 
-    private static void set1f(int loc, float v) { if (loc >= 0) GLES20.glUniform1f(loc, v); }
-    private static void set1i(int loc, int v)   { if (loc >= 0) GLES20.glUniform1i(loc, v); }
+    /**
+     * Full-size LUT textures from the share group's cache (pinned; pair with LutManager.releaseTextures);
+     * null when the LUT source cannot be found.
+     */
+    private static @Nullable LutTextures loadLutTextures(Context ctx, String lutId) throws IOException {
+        final String id = lutId.trim();
+        try {
+            return LutManager.acquireTextures(ctx, id, () -> {
+                InputStream is = openLutStream(ctx, id);
+                if (is == null) throw new FileNotFoundException("LUT not found: " + id);
+                return is;
+            }, 0);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
 
     private static Bitmap flipBitmapVertically(Bitmap src) {
         Matrix matrix = new Matrix();
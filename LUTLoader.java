@@ -1,62 +1,93 @@
-package com.squeezer.app;
-
-import android.util.Log;
-import android.util.Pair;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
-
-public class LUTLoader {
-    private static Pair<Integer, Integer> lastLUTSize = new Pair<>(33, 33);  // Default
-
-    public static Pair<Integer, Integer> loadCubeLUT(InputStream inputStream) throws IOException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-        List<Float> rgbList = new ArrayList<>();
-        int lutSize = 0;
-
-        String line;
-        while ((line = reader.readLine()) != null) {
-            line = line.trim();
-            if (line.startsWith("LUT_3D_SIZE")) {
-                int parsedSize = Integer.parseInt(line.split(" ")[1].trim());
-                lutSize = parsedSize;
-                lastLUTSize = new Pair<>(parsedSize, parsedSize);
-                Log.d("LUT", "✔ Parsed LUT_3D_SIZE = " + parsedSize);
-            } else if (!line.startsWith("#") && !line.isEmpty() && Character.isDigit(line.charAt(0))) {
-                String[] parts = line.split("\\s+");
-                if (parts.length >= 3) {
-                    rgbList.add(Float.parseFloat(parts[0]));
-                    rgbList.add(Float.parseFloat(parts[1]));
-                    rgbList.add(Float.parseFloat(parts[2]));
-                }
-            }
-        }
-        reader.close();
-
-        int expectedSize = lutSize * lutSize * lutSize * 3;
-        Log.d("LUT", "✔ Parsed RGB float values = " + rgbList.size());
-        Log.d("LUT", "✔ Expected RGB float count = " + expectedSize);
-
-        if (lutSize <= 0 || rgbList.size() != expectedSize) {
-            throw new IOException("Invalid LUT or size: " + lutSize + ", parsed RGB: " + rgbList.size());
-        }
-
-        float[] lutData = new float[rgbList.size()];
-        for (int i = 0; i < rgbList.size(); i++) {
-            lutData[i] = rgbList.get(i);
-        }
-
-        int textureId = ShaderUtils.createLUTTexture(lutData, lutSize);
-        return new Pair<>(textureId, lutSize);
-    }
-
-    public static Pair<Integer, Integer> getLastLoadedLUTSize() {
-        return lastLUTSize;
-    }
-}
-
-
+package com.squeezer.app;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.Pair;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public class LUTLoader {
+    private static Pair<Integer, Integer> lastLUTSize = new Pair<>(33, 33);  // Default
+
+    public static Pair<Integer, Integer> loadCubeLUT(InputStream inputStream) throws IOException {
+        LutTable table;
+        try {
+            table = LutFormats.parse(inputStream, null);
+        } finally {
+            inputStream.close();
+        }
+
+        if (!table.has3D()) {
+            throw new IOException("Invalid LUT or size: missing LUT_3D_SIZE");
+        }
+        int lutSize = table.size;
+        lastLUTSize = new Pair<>(lutSize, lutSize);
+        Log.d("LUT", "✔ Parsed LUT_3D_SIZE = " + lutSize + ", RGB float values = " + table.data.length);
+
+        int textureId = ShaderUtils.createLUTTexture(table.data, lutSize);
+        return new Pair<>(textureId, lutSize);
+    }
+
+    /** Load a 3D-only LUT by app-level ID through the compiled .lutbin cache; the caller owns the texture. */
+    public static Pair<Integer, Integer> loadCubeLUT(Context context, String lutId) throws IOException {
+        return loadCubeLUT(context, lutId, () -> LutManager.openLutStream(context, lutId));
+    }
+
+    /** Same as above with a custom source opener (only used when the LUT is not compiled yet). */
+    public static Pair<Integer, Integer> loadCubeLUT(Context context, String lutId,
+                                                     LutBinaryCache.Source source) throws IOException {
+        LutBinaryCache.Mapped lut = LutBinaryCache.load(context, lutId, source);
+        if (!lut.has3D() || lut.has1D()) {
+            throw new IOException("LUT has a 1D table (" + lutId + "); use loadLutTextures");
+        }
+        lastLUTSize = new Pair<>(lut.size, lut.size);
+        Log.d("LUT", "✔ Loaded compiled LUT " + lutId + " (size=" + lut.size + ")");
+
+        int textureId = ShaderUtils.createLUTTexture(lut.table, lut.size);
+        return new Pair<>(textureId, lut.size);
+    }
+
+    /** Load any LUT (3D, 1D curves or shaper + 3D) by app-level ID at full size; the caller owns the textures. */
+    public static LutTextures loadLutTextures(Context context, String lutId) throws IOException {
+        return loadLutTextures(context, lutId, 0);
+    }
+
+    /** Same as above with the cube capped at {@code maxCubeSize} per axis (0 = full size, e.g. for export). */
+    public static LutTextures loadLutTextures(Context context, String lutId, int maxCubeSize) throws IOException {
+        return loadLutTextures(context, lutId, () -> LutManager.openLutStream(context, lutId), maxCubeSize);
+    }
+
+    /** Full-size load with a custom source opener (only used when the LUT is not compiled yet). */
+    public static LutTextures loadLutTextures(Context context, String lutId,
+                                              LutBinaryCache.Source source) throws IOException {
+        return loadLutTextures(context, lutId, source, 0);
+    }
+
+    /** Custom source opener + cube size cap; smaller cubes are tetrahedrally resampled (see LutResampler). */
+    public static LutTextures loadLutTextures(Context context, String lutId,
+                                              LutBinaryCache.Source source, int maxCubeSize) throws IOException {
+        LutBinaryCache.Mapped lut = LutBinaryCache.load(context, lutId, source);
+        return createLutTextures(lut, lut.has3D() ? LutResampler.sizeFor(lut.size, maxCubeSize) : 0, lutId);
+    }
+
+    /** Uploads a compiled LUT with the cube at {@code cubeSize} (see LutResampler.sizeFor); caller owns the result. */
+    static LutTextures createLutTextures(LutBinaryCache.Mapped lut, int cubeSize, String lutId) {
+        // Recycled storage of the same shape is updated with glTexSubImage2D (see LutTexturePool)
+        LutTexturePool pool = LutTextureCache.forCurrentContext().pool();
+        int cube = lut.has3D() ? pool.uploadCube(LutResampler.table(lut, cubeSize), cubeSize) : 0;
+        int curve = lut.has1D() ? pool.uploadCurve(lut.curve, lut.size1D) : 0;
+        if (lut.has3D()) lastLUTSize = new Pair<>(cubeSize, cubeSize);
+        Log.d("LUT", "✔ Loaded compiled LUT " + lutId + " (3D=" + lut.size
+                + (cubeSize != lut.size ? "→" + cubeSize : "") + ", 1D=" + lut.size1D + ")");
+        LutTextures tex = new LutTextures(cube, cubeSize, cube != 0 && pool.cube3D(cubeSize),
+                curve, lut.has1D() ? ShaderUtils.curveTextureWidth(lut.size1D) : 0);
+        tex.setSource(lut);
+        return tex;
+    }
+
+    public static Pair<Integer, Integer> getLastLoadedLUTSize() {
+        return lastLUTSize;
+    }
+}
+
@@ -0,0 +1,368 @@
+// File: LutBinaryCache.java
+package com.squeezer.app;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiled on-disk LUT cache (.lutbin) under cacheDir/lut_bin:
+ *  - Entries are named by the SHA-1 of the parsed table (sizes, domain, floats; not title or file bytes),
+ *    so the same look as an asset, a user_luts copy or a content:// URI, in any format, is one entry
+ *  - A small alias index maps (lutId, source stamp) → table hash, so warm loads never open the source
+ *  - Mapped entries are kept per hash in memory: every ID of one look shares one Mapped instance,
+ *    which LutManager uses as the key for its GL texture cache
+ *  - Warm load = alias + in-memory hit (or header check + FileChannel.map); tables are little-endian FloatBuffers
+ *  - Cold load parses once through LutFormats, hashes the encoded entry and writes it only if it is new
+ *
+ * Layout (little-endian):
+ *   0  "LUTB" magic, int version, int size3D, int size1D
+ *  16  float[3] domainMin, float[3] domainMax
+ *  40  byte[20] SHA-1 of bytes 8..40 and 64..end (the table), padded to 64
+ *  64  float32 RGB table, size3D³ rows (red fastest), absent when size3D = 0
+ *  ..  float32 RGB 1D table / shaper, size1D rows, absent when size1D = 0
+ */
+public final class LutBinaryCache {
+    private static final String TAG = "LUT";
+    private static final String DIR = "lut_bin";
+    private static final String EXT = ".lutbin";
+    private static final String INDEX = "index.txt";
+
+    private static final int MAGIC = 0x4254554C; // "LUTB" little-endian
+    private static final int VERSION = 3;       // 2: optional 1D table after the cube; 3: table hash
+    private static final int HEADER_BYTES = 64;
+    private static final int HASH_OFFSET = 40;
+    private static final int MAX_INDEX = 256;
+    private static final int MAX_LIVE = 16;
+    private static final long MAX_DIR_BYTES = 96L * 1024 * 1024;
+
+    private LutBinaryCache() {}
+
+    /** Opens the original LUT source; only called on a cache miss. */
+    public interface Source { InputStream open() throws IOException; }
+
+    /**
+     * A mapped compiled LUT. Buffers are read-only and positioned at 0.
+     * {@link #size} is 0 for 1D-only LUTs; {@link #size1D} is 0 when there is no 1D table / shaper.
+     */
+    public static final class Mapped {
+        public final int size;
+        public final FloatBuffer table;
+        public final int size1D;
+        public final @Nullable FloatBuffer curve;
+        public final float[] domainMin;
+        public final float[] domainMax;
+        public final String hash;
+
+        Mapped(int size, FloatBuffer table, int size1D, @Nullable FloatBuffer curve,
+               float[] domainMin, float[] domainMax, String hash) {
+            this.size = size;
+            this.table = table;
+            this.size1D = size1D;
+            this.curve = curve;
+            this.domainMin = domainMin;
+            this.domainMax = domainMax;
+            this.hash = hash;
+        }
+
+        public boolean has3D() { return size > 0; }
+        public boolean has1D() { return size1D > 0 && curve != null; }
+    }
+
+    private static LinkedHashMap<String, String> sIndex; // "lutId|stamp" -> hash
+    private static final LinkedHashMap<String, Mapped> sLive = // hash -> mapped entry (canonical instance)
+            new LinkedHashMap<String, Mapped>(16, 0.75f, true) {
+                @Override protected boolean removeEldestEntry(Map.Entry<String, Mapped> eldest) {
+                    return size() > MAX_LIVE;
+                }
+            };
+
+    // ---------- Public API ----------
+    /** Load a LUT (3D, 1D or shaper + 3D) by app-level ID, compiling it on first use. */
+    public static Mapped load(Context ctx, String lutId, Source source) throws IOException {
+        if (lutId == null) throw new IOException("lutId is null");
+        final File dir = getDir(ctx);
+        final String stamp = stampFor(ctx, lutId);
+        final String aliasKey = (stamp != null) ? lutId + "|" + stamp : null;
+
+        // 1) Warm: alias → canonical entry, source untouched
+        if (aliasKey != null) {
+            String hash = getAlias(dir, aliasKey);
+            if (hash != null) {
+                Mapped hit = canonical(dir, hash);
+                if (hit != null) return hit;
+            }
+        }
+
+        // 2) Cold: parse (mapped when the source is a plain file), hash the table, compile if new
+        LutTable table = LutManager.parseMapped(ctx, lutId);
+        if (table == null) {
+            try (InputStream raw = source.open()) {
+                if (raw == null) throw new IOException("Unable to open LUT: " + lutId);
+                table = LutFormats.parse(raw, lutId);
+            }
+        }
+        if (!table.has3D() && !table.has1D()) throw new IOException("Missing or invalid LUT_3D_SIZE / LUT_1D_SIZE");
+
+        ByteBuffer encoded = encode(table);
+        String hash = hex(encoded.array(), HASH_OFFSET, 20);
+        Mapped mapped = canonical(dir, hash);
+        if (mapped != null) {
+            Log.d(TAG, "lutbin: " + lutId + " is an existing entry (" + hash + ")");
+        } else {
+            File out = new File(dir, hash + EXT);
+            write(out, encoded);
+            trimDir(dir);
+            mapped = canonical(dir, hash);
+        }
+        if (aliasKey != null) putAlias(dir, aliasKey, hash);
+        if (mapped != null) return mapped;
+
+        // Compiling failed (e.g., disk full): still serve the parsed table
+        Log.w(TAG, "lutbin unavailable for " + lutId + "; using parsed table");
+        FloatBuffer fb = FloatBuffer.wrap(table.has3D() ? table.data : new float[0]);
+        FloatBuffer curve = table.has1D() ? FloatBuffer.wrap(table.data1D) : null;
+        return new Mapped(table.size, fb, table.size1D, curve, table.domainMin, table.domainMax, hash);
+    }
+
+    /** Deletes every compiled entry and the alias index. */
+    public static synchronized void clear(Context ctx) {
+        File[] files = getDir(ctx).listFiles();
+        if (files != null) for (File f : files) { if (!f.delete()) Log.w(TAG, "lutbin: cannot delete " + f); }
+        sIndex = null;
+        sLive.clear();
+    }
+
+    // ---------- Entry I/O ----------
+    /** The one live Mapped for a table hash, mapping the entry file on first use. */
+    private static synchronized @Nullable Mapped canonical(File dir, String hash) {
+        Mapped hit = sLive.get(hash);
+        if (hit != null) return hit;
+        hit = tryMap(new File(dir, hash + EXT), hash);
+        if (hit != null) sLive.put(hash, hit);
+        return hit;
+    }
+
+    private static @Nullable Mapped tryMap(File f, String hash) {
+        if (!f.isFile()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel ch = raf.getChannel()) {
+            long len = ch.size();
+            if (len < HEADER_BYTES) return null;
+            MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_ONLY, 0, len);
+            mb.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mb.getInt(0) != MAGIC || mb.getInt(4) != VERSION) return null;
+            int size = mb.getInt(8);
+            int size1D = mb.getInt(12);
+            if ((size != 0 && (size < 2 || size > 256)) || size1D < 0 || size1D > 65536) return null;
+            if (size == 0 && size1D == 0) return null;
+            long cubeBytes = (long) size * size * size * 3 * 4;
+            long expected = HEADER_BYTES + cubeBytes + (long) size1D * 3 * 4;
+            if (len != expected) return null;
+
+            byte[] stored = new byte[20];
+            for (int i = 0; i < stored.length; i++) stored[i] = mb.get(HASH_OFFSET + i);
+            if (!hex(stored).equals(hash)) return null;
+
+            float[] dMin = { mb.getFloat(16), mb.getFloat(20), mb.getFloat(24) };
+            float[] dMax = { mb.getFloat(28), mb.getFloat(32), mb.getFloat(36) };
+
+            mb.position(HEADER_BYTES).limit((int) (HEADER_BYTES + cubeBytes));
+            FloatBuffer table = mb.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            FloatBuffer curve = null;
+            if (size1D > 0) {
+                mb.limit((int) len).position((int) (HEADER_BYTES + cubeBytes));
+                curve = mb.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            }
+            //noinspection ResultOfMethodCallIgnored
+            f.setLastModified(System.currentTimeMillis()); // LRU for trimDir
+            return new Mapped(size, table, size1D, curve, dMin, dMax, hash);
+        } catch (Throwable t) {
+            Log.w(TAG, "lutbin map failed (" + f.getName() + "): " + t.getMessage());
+            return null;
+        }
+    }
+
+    /** Full entry bytes for a parsed table, with the table hash filled in at HASH_OFFSET. */
+    private static ByteBuffer encode(LutTable t) throws IOException {
+        int cubeFloats = t.has3D() ? t.data.length : 0;
+        int curveFloats = t.has1D() ? t.data1D.length : 0;
+        ByteBuffer bb = ByteBuffer.allocate(HEADER_BYTES + (cubeFloats + curveFloats) * 4).order(ByteOrder.LITTLE_ENDIAN);
+        bb.putInt(MAGIC).putInt(VERSION).putInt(t.has3D() ? t.size : 0).putInt(t.has1D() ? t.size1D : 0);
+        for (int i = 0; i < 3; i++) bb.putFloat(t.domainMin[i]);
+        for (int i = 0; i < 3; i++) bb.putFloat(t.domainMax[i]);
+        bb.position(HEADER_BYTES);
+        FloatBuffer fb = bb.asFloatBuffer();
+        if (cubeFloats > 0) fb.put(t.data);
+        if (curveFloats > 0) fb.put(t.data1D);
+
+        // Hash sizes + domain + tables: equal looks get equal names whatever their source
+        MessageDigest md = sha1();
+        byte[] a = bb.array();
+        md.update(a, 8, HASH_OFFSET - 8);
+        md.update(a, HEADER_BYTES, a.length - HEADER_BYTES);
+        bb.position(HASH_OFFSET);
+        bb.put(md.digest(), 0, 20);
+        bb.position(0);
+        return bb;
+    }
+
+    private static void write(File out, ByteBuffer bb) {
+        File tmp = new File(out.getParentFile(), out.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp); FileChannel ch = fos.getChannel()) {
+            while (bb.hasRemaining()) ch.write(bb);
+        } catch (IOException e) {
+            Log.w(TAG, "lutbin write failed: " + e.getMessage());
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(out)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+    }
+
+    private static void trimDir(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(EXT));
+        if (files == null) return;
+        long total = 0;
+        for (File f : files) total += f.length();
+        if (total <= MAX_DIR_BYTES) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : files) {
+            if (total <= MAX_DIR_BYTES) break;
+            long len = f.length();
+            if (f.delete()) total -= len;
+        }
+    }
+
+    // ---------- Alias index ----------
+    private static synchronized @Nullable String getAlias(File dir, String key) {
+        return index(dir).get(key);
+    }
+
+    private static synchronized void putAlias(File dir, String key, String hash) {
+        LinkedHashMap<String, String> idx = index(dir);
+        if (hash.equals(idx.get(key))) return;
+        idx.put(key, hash);
+        File tmp = new File(dir, INDEX + ".tmp");
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> e : idx.entrySet()) {
+                w.write(e.getKey()); w.write('\t'); w.write(e.getValue()); w.write('\n');
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "lutbin index write failed: " + e.getMessage());
+            return;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        tmp.renameTo(new File(dir, INDEX));
+    }
+
+    private static LinkedHashMap<String, String> index(File dir) {
+        if (sIndex != null) return sIndex;
+        sIndex = new LinkedHashMap<String, String>(64, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MAX_INDEX;
+            }
+        };
+        File f = new File(dir, INDEX);
+        if (!f.isFile()) return sIndex;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int tab = line.lastIndexOf('\t');
+                if (tab > 0) sIndex.put(line.substring(0, tab), line.substring(tab + 1));
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "lutbin index read failed: " + e.getMessage());
+        }
+        return sIndex;
+    }
+
+    // ---------- Source stamps ----------
+    /** Cheap change detector for a LUT source, or null when none is available. */
+    static @Nullable String stampFor(Context ctx, String lutId) {
+        try {
+            String path = LutManager.resolvePathIfFile(lutId);
+            if (path != null) {
+                File f = new File(path);
+                return f.isFile() ? f.length() + "@" + f.lastModified() : null;
+            }
+            Uri uri = LutManager.resolveUriIfExternal(lutId);
+            if (uri != null) return stampForUri(ctx, uri);
+            // Assets only change with the APK
+            PackageInfo pi = ctx.getPackageManager().getPackageInfo(ctx.getPackageName(), 0);
+            return "apk@" + pi.lastUpdateTime;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private static @Nullable String stampForUri(Context ctx, Uri uri) {
+        String[] cols = { OpenableColumns.SIZE, DocumentsContract.Document.COLUMN_LAST_MODIFIED };
+        try (Cursor c = ctx.getContentResolver().query(uri, cols, null, null, null)) {
+            if (c == null || !c.moveToFirst()) return null;
+            int si = c.getColumnIndex(OpenableColumns.SIZE);
+            int mi = c.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+            if (si < 0 || mi < 0 || c.isNull(si) || c.isNull(mi)) return null;
+            return c.getLong(si) + "@" + c.getLong(mi);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    // ---------- Helpers ----------
+    private static File getDir(Context ctx) {
+        File dir = new File(ctx.getCacheDir(), DIR);
+        if (!dir.exists()) dir.mkdirs();
+        return dir;
+    }
+
+    private static MessageDigest sha1() throws IOException {
+        try { return MessageDigest.getInstance("SHA-1"); }
+        catch (NoSuchAlgorithmException e) { throw new IOException("SHA-1 unavailable", e); }
+    }
+
+    private static String hex(byte[] b) {
+        return hex(b, 0, b.length);
+    }
+
+    private static String hex(byte[] b, int off, int len) {
+        char[] out = new char[len * 2];
+        final char[] digits = "0123456789abcdef".toCharArray();
+        for (int i = 0; i < len; i++) {
+            out[i * 2] = digits[(b[off + i] >> 4) & 0xF];
+            out[i * 2 + 1] = digits[b[off + i] & 0xF];
+        }
+        return new String(out);
+    }
+}
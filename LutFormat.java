@@ -0,0 +1,34 @@
+// File: LutFormat.java
+package com.squeezer.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * One LUT file format (see LutFormats for the registry and sniffing):
+ *  - sniff() looks at the first bytes only (magic / first meaningful line)
+ *  - read() produces the shared primitive LutTable, so callers never care about the source format
+ *  - scanHeader() is the cheap metadata path used by LutMetadataIndex
+ */
+public interface LutFormat {
+    /** Short display name, e.g. "cube". */
+    String name();
+
+    /** Lower-case file extensions without the dot, used when sniffing is inconclusive. */
+    String[] extensions();
+
+    /** True if {@code head[0..len)} (start of the file) looks like this format. */
+    boolean sniff(byte[] head, int len);
+
+    /** Parse a whole LUT. The stream is not closed. */
+    LutTable read(InputStream in) throws IOException;
+
+    /** Parse from position to limit; override when the format can use the buffer directly. */
+    default LutTable read(ByteBuffer buf) throws IOException {
+        return read(LutFormats.asStream(buf));
+    }
+
+    /** Header-only metadata; must not allocate the table. The stream is not closed. */
+    LutInfo scanHeader(InputStream in) throws IOException;
+}
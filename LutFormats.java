@@ -0,0 +1,135 @@
+// File: LutFormats.java
+package com.squeezer.app;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * LUT format registry:
+ *  - Formats: .cube (CubeParser), Hald CLUT images (.png), Autodesk / Lustre .3dl
+ *  - Detection: magic bytes / first meaningful line first, then the file extension, then .cube
+ *  - nameHint is any LUT ID or file name ("asset:Free/Foo.3dl", "file:/x/y.png", display names);
+ *    content URIs often have no extension, which is why sniffing comes first
+ */
+public final class LutFormats {
+    private static final int SNIFF_BYTES = 4096;
+
+    public static final LutFormat CUBE = new CubeLutFormat();
+    public static final LutFormat HALD = new HaldClutFormat();
+    public static final LutFormat THREE_DL = new ThreeDlFormat();
+
+    // Order matters: binary magic first, .cube last (it is also the fallback)
+    private static final LutFormat[] FORMATS = { HALD, THREE_DL, CUBE };
+
+    private LutFormats() {}
+
+    // ---------- Public API ----------
+    /** Parse any supported LUT. The stream is not closed. */
+    public static LutTable parse(InputStream in, @Nullable String nameHint) throws IOException {
+        if (in == null) throw new IOException("LUT stream is null");
+        InputStream bin = in.markSupported() ? in : new BufferedInputStream(in, SNIFF_BYTES);
+        return detect(bin, nameHint).read(bin);
+    }
+
+    /** Parse any supported LUT from position to limit (heap, direct or mapped). */
+    public static LutTable parse(ByteBuffer buf, @Nullable String nameHint) throws IOException {
+        if (buf == null) throw new IOException("LUT buffer is null");
+        return detect(buf, nameHint).read(buf);
+    }
+
+    /** Header-only metadata for any supported LUT. The stream is not closed. */
+    public static LutInfo scanHeader(InputStream in, @Nullable String nameHint) throws IOException {
+        if (in == null) throw new IOException("LUT stream is null");
+        InputStream bin = in.markSupported() ? in : new BufferedInputStream(in, SNIFF_BYTES);
+        return detect(bin, nameHint).scanHeader(bin);
+    }
+
+    /** True for file names with a supported LUT extension (listing / import filters). */
+    public static boolean isLutFileName(@Nullable String name) {
+        return byExtension(name) != null;
+    }
+
+    // ---------- Detection ----------
+    /** Peeks the head of a mark-supporting stream; the stream is reset to where it was. */
+    static LutFormat detect(InputStream in, @Nullable String nameHint) throws IOException {
+        byte[] head = new byte[SNIFF_BYTES];
+        in.mark(SNIFF_BYTES);
+        int len = 0;
+        try {
+            int n;
+            while (len < head.length && (n = in.read(head, len, head.length - len)) > 0) len += n;
+        } finally {
+            in.reset();
+        }
+        return detect(head, len, nameHint);
+    }
+
+    static LutFormat detect(ByteBuffer buf, @Nullable String nameHint) {
+        ByteBuffer d = buf.duplicate();
+        byte[] head = new byte[Math.min(SNIFF_BYTES, d.remaining())];
+        d.get(head);
+        return detect(head, head.length, nameHint);
+    }
+
+    private static LutFormat detect(byte[] head, int len, @Nullable String nameHint) {
+        for (LutFormat f : FORMATS) {
+            if (f.sniff(head, len)) return f;
+        }
+        LutFormat byExt = byExtension(nameHint);
+        return byExt != null ? byExt : CUBE;
+    }
+
+    private static @Nullable LutFormat byExtension(@Nullable String name) {
+        if (name == null) return null;
+        int dot = name.lastIndexOf('.');
+        if (dot < 0 || dot == name.length() - 1) return null;
+        String ext = name.substring(dot + 1).toLowerCase(Locale.US);
+        for (LutFormat f : FORMATS) {
+            for (String e : f.extensions()) if (e.equals(ext)) return f;
+        }
+        return null;
+    }
+
+    // ---------- Helpers for format implementations ----------
+    /** Read-only InputStream over a buffer's remaining bytes (the buffer itself is untouched). */
+    static InputStream asStream(ByteBuffer buf) {
+        final ByteBuffer b = buf.duplicate();
+        return new InputStream() {
+            @Override public int read() {
+                return b.hasRemaining() ? (b.get() & 0xFF) : -1;
+            }
+            @Override public int read(byte[] dst, int off, int len) {
+                if (len == 0) return 0;
+                if (!b.hasRemaining()) return -1;
+                int n = Math.min(len, b.remaining());
+                b.get(dst, off, n);
+                return n;
+            }
+            @Override public int available() { return b.remaining(); }
+        };
+    }
+
+    /**
+     * First line that is not blank and not a '#' comment, as an ASCII string (BOM skipped),
+     * or null if the head has none.
+     */
+    static @Nullable String firstMeaningfulLine(byte[] head, int len) {
+        int i = 0;
+        if (len >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) i = 3;
+        while (i < len) {
+            int start = i;
+            while (i < len && head[i] != '\n') i++;
+            String line = new String(head, start, i - start, StandardCharsets.ISO_8859_1).trim();
+            i++;
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            return line; // may be cut at the end of the head; fine for sniffing
+        }
+        return null;
+    }
+}
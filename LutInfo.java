@@ -0,0 +1,40 @@
+// File: LutInfo.java
+package com.squeezer.app;
+
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Header-only LUT metadata (see CubeParser.scanHeader / LutMetadataIndex):
+ *  - TITLE, 3D edge length, 1D entry count, DOMAIN_MIN / DOMAIN_MAX
+ *  - No table data; cheap enough to keep for every LUT in the library
+ */
+public final class LutInfo {
+    public final @Nullable String title;
+    /** 3D edge length, 0 when the header declares none. */
+    public final int size;
+    /** 1D entry count, 0 when the header declares none. */
+    public final int size1D;
+    public final float[] domainMin;
+    public final float[] domainMax;
+
+    LutInfo(@Nullable String title, int size, int size1D, float[] domainMin, float[] domainMax) {
+        this.title = title;
+        this.size = size;
+        this.size1D = size1D;
+        this.domainMin = domainMin;
+        this.domainMax = domainMax;
+    }
+
+    public boolean has3D() { return size > 0; }
+    public boolean has1D() { return size1D > 0; }
+
+    /** Short type/size label, e.g. "33³", "1D 1024" or "1D 4096 + 65³". */
+    public String describe() {
+        if (has1D() && has3D()) return String.format(Locale.US, "1D %d + %d³", size1D, size);
+        if (has3D()) return size + "³";
+        if (has1D()) return "1D " + size1D;
+        return "?";
+    }
+}
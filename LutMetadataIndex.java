@@ -0,0 +1,162 @@
+// File: LutMetadataIndex.java
+package com.squeezer.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent LUT metadata index (cacheDir/lut_meta.txt) for library listings:
+ *  - Keyed by (lutId, source stamp), same change detection as LutBinaryCache
+ *  - Misses are filled with LutFormats.scanHeader (first few KB / image bounds only, no table)
+ *  - Batch lookups write the file once, so a cold open of hundreds of LUTs is one header pass
+ *
+ * Line format (tab-separated):
+ *   lutId|stamp  size3D  size1D  minR,minG,minB  maxR,maxG,maxB  title
+ */
+public final class LutMetadataIndex {
+    private static final String TAG = "LUT";
+    private static final String FILE = "lut_meta.txt";
+    private static final int MAX_ENTRIES = 1024;
+
+    private static LinkedHashMap<String, LutInfo> sIndex; // "lutId|stamp" -> info
+    private static boolean sDirty;
+
+    private LutMetadataIndex() {}
+
+    // ---------- Public API ----------
+    /** Metadata for one LUT ID, scanning the header on a miss. */
+    public static LutInfo get(Context ctx, String lutId) throws IOException {
+        if (lutId == null) throw new IOException("lutId is null");
+        LutInfo info = lookupOrScan(ctx, lutId);
+        flush(ctx);
+        return info;
+    }
+
+    /**
+     * Metadata for many IDs, in input order. IDs that cannot be read are left out
+     * (logged) so one broken file doesn't hide the rest of the library.
+     */
+    public static Map<String, LutInfo> getAll(Context ctx, List<String> lutIds) {
+        Map<String, LutInfo> out = new LinkedHashMap<>();
+        for (String id : lutIds) {
+            try {
+                out.put(id, lookupOrScan(ctx, id));
+            } catch (IOException e) {
+                Log.w(TAG, "lut meta: " + id + ": " + e.getMessage());
+            }
+        }
+        flush(ctx);
+        return out;
+    }
+
+    /** Drops the in-memory and on-disk index. */
+    public static synchronized void clear(Context ctx) {
+        sIndex = null;
+        sDirty = false;
+        //noinspection ResultOfMethodCallIgnored
+        new File(ctx.getCacheDir(), FILE).delete();
+    }
+
+    // ---------- Lookup ----------
+    private static LutInfo lookupOrScan(Context ctx, String lutId) throws IOException {
+        String stamp = LutBinaryCache.stampFor(ctx, lutId);
+        String key = (stamp != null) ? lutId + "|" + stamp : null;
+        if (key != null) {
+            LutInfo hit = cached(ctx, key);
+            if (hit != null) return hit;
+        }
+
+        LutInfo info;
+        try (InputStream is = LutManager.openLutStream(ctx, lutId)) {
+            info = LutFormats.scanHeader(is, lutId);
+        }
+        if (key != null) store(ctx, key, info);
+        return info;
+    }
+
+    private static synchronized @Nullable LutInfo cached(Context ctx, String key) {
+        return index(ctx).get(key);
+    }
+
+    private static synchronized void store(Context ctx, String key, LutInfo info) {
+        index(ctx).put(key, info);
+        sDirty = true;
+    }
+
+    // ---------- Persistence ----------
+    private static synchronized void flush(Context ctx) {
+        if (!sDirty || sIndex == null) return;
+        File dst = new File(ctx.getCacheDir(), FILE);
+        File tmp = new File(ctx.getCacheDir(), FILE + ".tmp");
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, LutInfo> e : sIndex.entrySet()) {
+                LutInfo i = e.getValue();
+                w.write(e.getKey()); w.write('\t');
+                w.write(Integer.toString(i.size)); w.write('\t');
+                w.write(Integer.toString(i.size1D)); w.write('\t');
+                w.write(joinTriple(i.domainMin)); w.write('\t');
+                w.write(joinTriple(i.domainMax)); w.write('\t');
+                if (i.title != null) w.write(i.title.replace('\t', ' ').replace('\n', ' ').replace('\r', ' '));
+                w.write('\n');
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "lut meta write failed: " + e.getMessage());
+            return;
+        }
+        if (tmp.renameTo(dst)) sDirty = false;
+    }
+
+    private static LinkedHashMap<String, LutInfo> index(Context ctx) {
+        if (sIndex != null) return sIndex;
+        sIndex = new LinkedHashMap<String, LutInfo>(256, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, LutInfo> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+        File f = new File(ctx.getCacheDir(), FILE);
+        if (!f.isFile()) return sIndex;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] p = line.split("\t", -1);
+                if (p.length != 6) continue;
+                try {
+                    sIndex.put(p[0], new LutInfo(p[5].isEmpty() ? null : p[5],
+                            Integer.parseInt(p[1]), Integer.parseInt(p[2]),
+                            parseTriple(p[3]), parseTriple(p[4])));
+                } catch (NumberFormatException ignore) {
+                    // stale/corrupt line: rescanned on next lookup
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "lut meta read failed: " + e.getMessage());
+        }
+        return sIndex;
+    }
+
+    private static String joinTriple(float[] v) {
+        return v[0] + "," + v[1] + "," + v[2];
+    }
+
+    private static float[] parseTriple(String s) {
+        String[] p = s.split(",");
+        if (p.length != 3) throw new NumberFormatException("triple: " + s);
+        return new float[]{ Float.parseFloat(p[0]), Float.parseFloat(p[1]), Float.parseFloat(p[2]) };
+    }
+}
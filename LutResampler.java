@@ -0,0 +1,136 @@
+// File: LutResampler.java
+package com.squeezer.app;
+
+import android.util.Log;
+
+import java.nio.FloatBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Resamples 3D LUT tables (red-fastest, size³ * 3 floats) to a smaller lattice:
+ *  - Tetrahedral interpolation (same weights as Resolve / OCIO), exact on the grid and on the gray axis
+ *  - Preview and thumbnails don't need 65³: 33³ for the GL preview, 17³ for picker thumbnails
+ *  - Export keeps the full size (maxSize 0)
+ *  - Results are cached per (content hash, size) with a small byte budget
+ */
+public final class LutResampler {
+    private static final String TAG = "LutResampler";
+
+    /** Lattice size for the live GL preview. */
+    public static final int PREVIEW_SIZE = 33;
+    /** Lattice size for CPU thumbnails (picker chips / previews). */
+    public static final int THUMB_SIZE = 17;
+
+    private static final long MAX_CACHE_BYTES = 16L * 1024 * 1024;
+
+    private static final LinkedHashMap<String, float[]> sCache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long sCacheBytes;
+
+    private LutResampler() {}
+
+    // ---------- Public API ----------
+    /** Target size for a LUT of {@code size} capped at {@code maxSize} (0 = no cap). */
+    public static int sizeFor(int size, int maxSize) {
+        return (maxSize >= 2 && size > maxSize) ? maxSize : size;
+    }
+
+    /**
+     * 3D table of a compiled LUT at {@code size} per axis: the mapped table itself when the
+     * size already matches, otherwise a cached tetrahedral resample.
+     */
+    public static FloatBuffer table(LutBinaryCache.Mapped lut, int size) {
+        if (size == lut.size) return lut.table;
+        String key = lut.hash + "@" + size;
+        float[] hit = cached(key);
+        if (hit == null) {
+            long t0 = System.nanoTime();
+            hit = resample(lut.table, lut.size, size);
+            Log.d(TAG, "Resampled " + lut.size + "³ → " + size + "³ in "
+                    + ((System.nanoTime() - t0) / 1_000_000) + " ms");
+            store(key, hit);
+        }
+        return FloatBuffer.wrap(hit);
+    }
+
+    /** Resample a heap table (uncached; callers such as the picker keep their own cache). */
+    public static float[] resample(float[] src, int srcSize, int dstSize) {
+        return resample(FloatBuffer.wrap(src), srcSize, dstSize);
+    }
+
+    /** Tetrahedral resample of {@code src} (srcSize³ RGB, red-fastest) to dstSize³. Absolute reads only. */
+    public static float[] resample(FloatBuffer src, int srcSize, int dstSize) {
+        if (srcSize < 2 || dstSize < 2) throw new IllegalArgumentException("LUT sizes must be >= 2");
+        final int sr = 3, sg = 3 * srcSize, sb = 3 * srcSize * srcSize; // strides
+        final float scale = (srcSize - 1f) / (dstSize - 1f);
+        final int last = srcSize - 2; // lower corner index limit so +1 stays in range
+
+        float[] out = new float[dstSize * dstSize * dstSize * 3];
+        int[] i0 = new int[dstSize];
+        float[] f = new float[dstSize];
+        for (int i = 0; i < dstSize; i++) {
+            float p = i * scale;
+            int k = Math.min((int) p, last);
+            i0[i] = k;
+            f[i] = p - k;
+        }
+
+        int o = 0;
+        for (int b = 0; b < dstSize; b++) {
+            final float db = f[b];
+            final int ob = i0[b] * sb;
+            for (int g = 0; g < dstSize; g++) {
+                final float dg = f[g];
+                final int obg = ob + i0[g] * sg;
+                for (int r = 0; r < dstSize; r++, o += 3) {
+                    final float dr = f[r];
+                    final int c000 = obg + i0[r] * sr;
+                    final int c111 = c000 + sr + sg + sb;
+
+                    // Pick the tetrahedron containing (dr, dg, db): two inner corners + weights
+                    int c1, c2;
+                    float w0, w1, w2, w3;
+                    if (dr >= dg) {
+                        if (dg >= db)      { c1 = c000 + sr; c2 = c000 + sr + sg; w0 = 1 - dr; w1 = dr - dg; w2 = dg - db; w3 = db; }
+                        else if (dr >= db) { c1 = c000 + sr; c2 = c000 + sr + sb; w0 = 1 - dr; w1 = dr - db; w2 = db - dg; w3 = dg; }
+                        else               { c1 = c000 + sb; c2 = c000 + sr + sb; w0 = 1 - db; w1 = db - dr; w2 = dr - dg; w3 = dg; }
+                    } else {
+                        if (db >= dg)      { c1 = c000 + sb; c2 = c000 + sg + sb; w0 = 1 - db; w1 = db - dg; w2 = dg - dr; w3 = dr; }
+                        else if (db >= dr) { c1 = c000 + sg; c2 = c000 + sg + sb; w0 = 1 - dg; w1 = dg - db; w2 = db - dr; w3 = dr; }
+                        else               { c1 = c000 + sg; c2 = c000 + sr + sg; w0 = 1 - dg; w1 = dg - dr; w2 = dr - db; w3 = db; }
+                    }
+                    for (int ch = 0; ch < 3; ch++) {
+                        out[o + ch] = w0 * src.get(c000 + ch) + w1 * src.get(c1 + ch)
+                                + w2 * src.get(c2 + ch) + w3 * src.get(c111 + ch);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /** Drop all cached resamples (e.g., on trim memory). */
+    public static synchronized void clear() {
+        sCache.clear();
+        sCacheBytes = 0;
+    }
+
+    // ---------- Cache ----------
+    private static synchronized float[] cached(String key) {
+        return sCache.get(key);
+    }
+
+    private static synchronized void store(String key, float[] table) {
+        float[] prev = sCache.put(key, table);
+        if (prev != null) sCacheBytes -= prev.length * 4L;
+        sCacheBytes += table.length * 4L;
+        Iterator<Map.Entry<String, float[]>> it = sCache.entrySet().iterator();
+        while (sCacheBytes > MAX_CACHE_BYTES && it.hasNext()) {
+            Map.Entry<String, float[]> e = it.next();
+            if (e.getKey().equals(key)) continue; // keep the entry just added
+            sCacheBytes -= e.getValue().length * 4L;
+            it.remove();
+        }
+    }
+}
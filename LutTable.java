@@ -0,0 +1,40 @@
+// File: LutTable.java
+package com.squeezer.app;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Parsed LUT in primitive form, shared by every loader:
+ *  - 3D table: size³ RGB triplets, red varies fastest (.cube order)
+ *  - 1D table: size1D RGB triplets (per-channel curves)
+ *  - Header info: TITLE, DOMAIN_MIN / DOMAIN_MAX
+ */
+public final class LutTable {
+    public final @Nullable String title;
+    /** 3D edge length, 0 when the file has no 3D section. */
+    public final int size;
+    /** size³ * 3 floats, or null when the file has no 3D section. */
+    public final @Nullable float[] data;
+    /** 1D entry count, 0 when the file has no 1D section. */
+    public final int size1D;
+    /** size1D * 3 floats, or null when the file has no 1D section. */
+    public final @Nullable float[] data1D;
+    public final float[] domainMin;
+    public final float[] domainMax;
+
+    LutTable(@Nullable String title,
+             int size, @Nullable float[] data,
+             int size1D, @Nullable float[] data1D,
+             float[] domainMin, float[] domainMax) {
+        this.title = title;
+        this.size = size;
+        this.data = data;
+        this.size1D = size1D;
+        this.data1D = data1D;
+        this.domainMin = domainMin;
+        this.domainMax = domainMax;
+    }
+
+    public boolean has3D() { return size > 0 && data != null; }
+    public boolean has1D() { return size1D > 0 && data1D != null; }
+}
@@ -0,0 +1,105 @@
+// File: LutTexelFormat.java
+package com.squeezer.app;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Texel format of LUT cube and curve textures, picked once per context by GlCaps:
+ *  - HALF_FLOAT: RGBA16F, GLES 3 core and filterable; 11-bit mantissa, so smooth 65³ looks don't band
+ *  - HALF_FLOAT_OES: the same texels on ES2 with OES_texture_half_float + OES_texture_half_float_linear
+ *  - RGB10_A2: 10 bits per channel in 4 bytes, ES2 with EXT_texture_type_2_10_10_10_REV
+ *  - RGBA8: fallback everywhere else
+ * pack() converts a run of float RGB triplets (clamped to 0..1, alpha opaque) in one tight loop per format.
+ */
+enum LutTexelFormat {
+    HALF_FLOAT(GLES30.GL_RGBA16F, GLES30.GL_RGBA16F, GLES30.GL_HALF_FLOAT, 8),
+    HALF_FLOAT_OES(GLES20.GL_RGBA, GLES30.GL_RGBA16F, 0x8D61 /* GL_HALF_FLOAT_OES */, 8),
+    RGB10_A2(GLES20.GL_RGBA, GLES30.GL_RGB10_A2, GLES30.GL_UNSIGNED_INT_2_10_10_10_REV, 4),
+    RGBA8(GLES20.GL_RGBA, GLES30.GL_RGBA8, GLES20.GL_UNSIGNED_BYTE, 4);
+
+    private static final short HALF_ONE = 0x3C00;
+
+    /** glTexImage2D internalformat (unsized on ES2 extensions). */
+    final int internalFormat2D;
+    /** glTexImage3D internalformat (GLES 3, sized). */
+    final int internalFormat3D;
+    /** Pixel transfer type; the transfer format is always GL_RGBA. */
+    final int type;
+    final int bytesPerTexel;
+
+    LutTexelFormat(int internalFormat2D, int internalFormat3D, int type, int bytesPerTexel) {
+        this.internalFormat2D = internalFormat2D;
+        this.internalFormat3D = internalFormat3D;
+        this.type = type;
+        this.bytesPerTexel = bytesPerTexel;
+    }
+
+    /** Whether this format keeps more than 8 bits per channel. */
+    boolean isHighPrecision() {
+        return this != RGBA8;
+    }
+
+    /**
+     * Writes {@code count} texels from RGB triplets starting at triplet {@code first} of {@code src},
+     * at out's position (out must be native-order; it is advanced).
+     */
+    void pack(FloatBuffer src, int first, int count, ByteBuffer out) {
+        int i = first * 3;
+        final int end = (first + count) * 3;
+        switch (this) {
+            case HALF_FLOAT:
+            case HALF_FLOAT_OES:
+                for (; i < end; i += 3) {
+                    out.putShort(toHalf(clamp01(src.get(i))));
+                    out.putShort(toHalf(clamp01(src.get(i + 1))));
+                    out.putShort(toHalf(clamp01(src.get(i + 2))));
+                    out.putShort(HALF_ONE);
+                }
+                break;
+            case RGB10_A2:
+                // UNSIGNED_INT_2_10_10_10_REV: red in the low bits, 2-bit alpha on top
+                for (; i < end; i += 3) {
+                    int r = (int) (clamp01(src.get(i)) * 1023f + 0.5f);
+                    int g = (int) (clamp01(src.get(i + 1)) * 1023f + 0.5f);
+                    int b = (int) (clamp01(src.get(i + 2)) * 1023f + 0.5f);
+                    out.putInt(0xC0000000 | (b << 20) | (g << 10) | r);
+                }
+                break;
+            default:
+                for (; i < end; i += 3) {
+                    out.put((byte) (clamp01(src.get(i)) * 255f));
+                    out.put((byte) (clamp01(src.get(i + 1)) * 255f));
+                    out.put((byte) (clamp01(src.get(i + 2)) * 255f));
+                    out.put((byte) 255);
+                }
+                break;
+        }
+    }
+
+    /** IEEE half bits of a float in [0, 1] (round to nearest; subnormals kept). */
+    static short toHalf(float f) {
+        int bits = Float.floatToRawIntBits(f);
+        int exp = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mant = bits & 0x7FFFFF;
+        if (exp <= 0) {
+            if (exp < -10) return 0;
+            mant |= 0x800000;
+            int shift = 14 - exp;
+            int h = mant >> shift;
+            if (((mant >> (shift - 1)) & 1) != 0) h++;
+            return (short) h;
+        }
+        if (exp >= 31) return 0x7C00;
+        int h = (exp << 10) | (mant >> 13);
+        if ((mant & 0x1000) != 0) h++; // a carry into the exponent is still the right rounding
+        return (short) h;
+    }
+
+    private static float clamp01(float v) {
+        return v < 0f ? 0f : (v > 1f ? 1f : v);
+    }
+}
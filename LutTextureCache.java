@@ -0,0 +1,210 @@
+// File: LutTextureCache.java
+package com.squeezer.app;
+
+import android.opengl.EGL14;
+import android.opengl.EGLContext;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LUT GL textures cached per EGL context or share group:
+ *  - One cache per private context, and one for all EglShareGroup members (they share texture names);
+ *    get it with forCurrentContext()
+ *  - Keyed by LutBinaryCache table hash + cube size, so equivalent LUTs from any source share textures
+ *  - Byte budget (cube + curve at the context's LutTexelFormat), LRU; evicted textures go back to the context's LutTexturePool
+ *    (reused via glTexSubImage2D/3D for the next LUT of that shape) or are deleted with glDeleteTextures
+ *  - Textures handed out are borrowed: callers must not release() them; pin() keeps an entry from being
+ *    evicted while another thread of the group is still drawing with it
+ *  - Call onContextDestroyed() right before eglDestroyContext (EGL helpers and renderers do)
+ * Call from a thread with an owning context current; the group cache is shared between GL threads,
+ * so instance methods are synchronized.
+ */
+public final class LutTextureCache {
+    private static final String TAG = "LutTextureCache";
+
+    /** ~20 65³ cubes or ~80 33³ previews at RGBA8 (half that at RGBA16F). */
+    public static final long DEFAULT_BUDGET_BYTES = 24L * 1024 * 1024;
+
+    private static final Map<Object, LutTextureCache> sByContext = new HashMap<>(); // EGLContext or group key
+
+    private final Object owner;
+    private final long budgetBytes;
+    private final LinkedHashMap<String, LutTextures> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final GlCaps caps;
+    private final LutTexturePool pool;
+    private final IdentityHashMap<LutTextures, Integer> pins = new IdentityHashMap<>();
+    private long bytes;
+    private int hits, misses, evictions;
+
+    private LutTextureCache(Object owner, long budgetBytes, GlCaps caps) {
+        this.owner = owner;
+        this.budgetBytes = budgetBytes;
+        this.caps = caps;
+        this.pool = new LutTexturePool(caps);
+    }
+
+    // ---------- Per-context registry ----------
+    /** The cache of the EGL context current on this thread (created on first use). */
+    public static LutTextureCache forCurrentContext() {
+        EGLContext ctx = EGL14.eglGetCurrentContext();
+        if (ctx == null || ctx.equals(EGL14.EGL_NO_CONTEXT)) {
+            throw new IllegalStateException("LutTextureCache: no EGL context current on this thread");
+        }
+        Object key = keyFor(ctx);
+        synchronized (sByContext) {
+            LutTextureCache c = sByContext.get(key);
+            if (c == null) {
+                c = new LutTextureCache(key, DEFAULT_BUDGET_BYTES, GlCaps.probe()); // caps fixed per context
+                sByContext.put(key, c);
+            }
+            return c;
+        }
+    }
+
+    /** The current context's cache if one exists (never creates one). */
+    static @Nullable LutTextureCache peekCurrentContext() {
+        EGLContext ctx = EGL14.eglGetCurrentContext();
+        if (ctx == null) return null;
+        Object key = keyFor(ctx);
+        synchronized (sByContext) { return sByContext.get(key); }
+    }
+
+    /**
+     * Forget a context's cache (for a share group member: leave the group, and drop the group cache
+     * only when it was the last member). Textures are deleted when the context is current on this
+     * thread; otherwise they go away with the context itself. Safe to call for contexts without a cache.
+     */
+    public static void onContextDestroyed(@Nullable EGLContext ctx) {
+        if (ctx == null) return;
+        ShaderPrograms.onContextDestroyed(ctx); // programs are per context, never shared
+        Object key = ctx;
+        if (EglShareGroup.leave(ctx)) {
+            if (!EglShareGroup.isEmpty()) return; // other members still own the shared textures
+            key = EglShareGroup.KEY;
+        }
+        LutTextureCache c;
+        synchronized (sByContext) { c = sByContext.remove(key); }
+        if (c == null) return;
+        Log.d(TAG, "Context torn down: " + c.stats());
+        if (ctx.equals(EGL14.eglGetCurrentContext())) c.deleteAll();
+        else c.dropAll();
+    }
+
+    // ---------- Cache ----------
+    /** Cached textures for key, or null (counts a hit or a miss). */
+    public synchronized @Nullable LutTextures get(String key) {
+        LutTextures t = entries.get(key);
+        if (t != null) hits++; else misses++;
+        return t;
+    }
+
+    /**
+     * Evicts least-recently-used entries until {@code incomingBytes} fit. Call before uploading a miss
+     * so the evicted storage is in the pool in time to be reused by that upload.
+     */
+    public synchronized void makeRoom(long incomingBytes) {
+        evictOver(budgetBytes - incomingBytes, null);
+    }
+
+    /** Adds textures (the cache now owns them) and evicts least-recently-used entries over budget. */
+    public synchronized void put(String key, LutTextures tex) {
+        LutTextures prev = entries.put(key, tex);
+        if (prev != null && prev != tex) {
+            bytes -= bytesOf(prev);
+            prev.release();
+        }
+        bytes += bytesOf(tex);
+        evictOver(budgetBytes, key); // never evict what was just added
+    }
+
+    /** Keeps {@code tex} from being evicted until unpin(); pins nest. */
+    public synchronized void pin(LutTextures tex) {
+        Integer n = pins.get(tex);
+        pins.put(tex, n == null ? 1 : n + 1);
+    }
+
+    public synchronized void unpin(LutTextures tex) {
+        Integer n = pins.get(tex);
+        if (n == null) return;
+        if (n <= 1) pins.remove(tex); else pins.put(tex, n - 1);
+    }
+
+    /** Deletes every cached and pooled texture (the cache stays usable). */
+    public synchronized void clear() {
+        for (LutTextures t : entries.values()) t.release(); // into the pool...
+        pool.deleteAll();                                   // ...then delete for real
+        dropAll();
+    }
+
+    /** Recycled texture storage + staging buffer of this context. */
+    LutTexturePool pool() { return pool; }
+
+    /** Capabilities probed when this cache's context was first used. */
+    GlCaps caps() { return caps; }
+
+    public synchronized int hitCount()      { return hits; }
+    public synchronized int missCount()     { return misses; }
+    public synchronized int evictionCount() { return evictions; }
+    public synchronized long sizeBytes()    { return bytes; }
+
+    public synchronized String stats() {
+        return "entries=" + entries.size() + " bytes=" + bytes + "/" + budgetBytes
+                + " hits=" + hits + " misses=" + misses + " evictions=" + evictions + " " + pool.stats();
+    }
+
+    // ---------- Helpers ----------
+    private static Object keyFor(EGLContext ctx) {
+        return EglShareGroup.isMember(ctx) ? EglShareGroup.KEY : ctx;
+    }
+
+    /**
+     * GPU bytes: size³ cube texels (GL_TEXTURE_3D or 2D strip, same count) + Nx1 curve, both at
+     * caps.lutFormat.bytesPerTexel (RGBA8, RGB10_A2 or half-float RGBA).
+     */
+    long bytesOf(LutTextures t) {
+        return bytesOf(t.hasCube() ? t.cubeSize : 0, t.hasCurve() ? t.curveSize : 0);
+    }
+
+    /** Same for a cube of cubeSize and a curve texture curveWidth texels wide (0 = absent). */
+    long bytesOf(int cubeSize, int curveWidth) {
+        int bpt = caps.lutFormat.bytesPerTexel;
+        return (long) cubeSize * cubeSize * cubeSize * bpt + (long) curveWidth * bpt;
+    }
+
+    private void evictOver(long limit, @Nullable String keep) {
+        Iterator<Map.Entry<String, LutTextures>> it = entries.entrySet().iterator();
+        while (bytes > limit && it.hasNext()) {
+            Map.Entry<String, LutTextures> e = it.next();
+            if (e.getKey().equals(keep) || pins.containsKey(e.getValue())) continue;
+            bytes -= bytesOf(e.getValue());
+            e.getValue().release(); // back to the pool
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /** Teardown: called after unregistering, so release() deletes instead of recycling. */
+    private synchronized void deleteAll() {
+        for (LutTextures t : entries.values()) t.release();
+        pool.deleteAll();
+        dropAll();
+    }
+
+    private synchronized void dropAll() {
+        entries.clear();
+        pins.clear();
+        bytes = 0;
+        pool.dropAll();
+    }
+
+    @Override public String toString() {
+        return "LutTextureCache{" + (owner == EglShareGroup.KEY ? "share group" : owner) + ", " + stats() + "}";
+    }
+}
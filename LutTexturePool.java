@@ -0,0 +1,158 @@
+// File: LutTexturePool.java
+package com.squeezer.app;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Recycled LUT texture storage for one EGL context (owned by that context's LutTextureCache):
+ *  - Released / evicted LUT textures keep their storage, grouped by texture shape (w x h)
+ *  - Uploads of a known shape use glTexSubImage2D/3D into recycled storage (no driver allocation)
+ *  - Cubes are 3D textures where the context's GlCaps allow it, else 2D strips (fixed per cube size);
+ *    cubes and curves use the context's LutTexelFormat (half float / 10-bit where supported)
+ *  - One direct staging buffer is reused for every upload (grown only when needed)
+ *  - Bounded: a few free textures per shape and a byte cap; the rest are deleted
+ * Any GL thread of the owning context or share group (methods are synchronized).
+ */
+final class LutTexturePool {
+    private static final String TAG = "LutTexturePool";
+    private static final int MAX_FREE_PER_SHAPE = 2;
+    private static final long MAX_FREE_BYTES = 8L * 1024 * 1024;
+
+    private final GlCaps caps;
+    private final HashMap<Long, ArrayDeque<Integer>> free = new HashMap<>();
+    private long freeBytes;
+    private @Nullable ByteBuffer staging;
+    private int allocations, reuses;
+
+    LutTexturePool(GlCaps caps) {
+        this.caps = caps;
+    }
+
+    /** Whether cubes of {@code size} are GL_TEXTURE_3D in this pool (see GlCaps.use3D). */
+    boolean cube3D(int size) {
+        return caps.use3D(size);
+    }
+
+    /** Pool of the current context, or null when no LutTextureCache exists for it (nothing to recycle into). */
+    static @Nullable LutTexturePool forCurrentContext() {
+        LutTextureCache cache = LutTextureCache.peekCurrentContext();
+        return cache != null ? cache.pool() : null;
+    }
+
+    // ---------- Uploads ----------
+    /** Uploads a size³ table as a 3D texture or (size²) x size strip (cube3D); returns the texture id. */
+    synchronized int uploadCube(FloatBuffer table, int size) {
+        int w = size * size, h = size;
+        final boolean use3D = cube3D(size);
+        final LutTexelFormat format = caps.lutFormat;
+        ByteBuffer buf = staging(w * h * format.bytesPerTexel);
+        ShaderUtils.packCube(table, size, use3D, format, buf);
+        buf.position(0);
+        int tex = take(w, h);
+        if (tex != 0) {
+            ShaderUtils.updateCubeTexture(tex, size, use3D, format, buf);
+            reuses++;
+            return tex;
+        }
+        allocations++;
+        return ShaderUtils.createCubeTexture(size, use3D, format, buf);
+    }
+
+    /** Uploads a 1D table as a curveTextureWidth(size1D) x 1 texture; returns the texture id. */
+    synchronized int uploadCurve(FloatBuffer curve, int size1D) {
+        int w = ShaderUtils.curveTextureWidth(size1D);
+        ByteBuffer buf = staging(w * caps.lutFormat.bytesPerTexel);
+        ShaderUtils.packCurve(curve, size1D, w, caps.lutFormat, buf);
+        buf.position(0);
+        return upload(w, 1, buf);
+    }
+
+    private int upload(int w, int h, ByteBuffer pixels) {
+        int tex = take(w, h);
+        if (tex != 0) {
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, tex);
+            GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, w, h,
+                    GLES20.GL_RGBA, caps.lutFormat.type, pixels);
+            reuses++;
+            return tex;
+        }
+        int[] ids = new int[1];
+        GLES20.glGenTextures(1, ids, 0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, ids[0]);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, caps.lutFormat.internalFormat2D, w, h, 0,
+                GLES20.GL_RGBA, caps.lutFormat.type, pixels);
+        allocations++;
+        return ids[0];
+    }
+
+    // ---------- Free storage ----------
+    /** Returns a texture's storage to the pool (or deletes it when the pool is full). */
+    synchronized void recycle(int tex, int w, int h) {
+        if (tex == 0) return;
+        long bytes = (long) w * h * caps.lutFormat.bytesPerTexel;
+        ArrayDeque<Integer> q = free.get(shapeKey(w, h));
+        if ((q != null && q.size() >= MAX_FREE_PER_SHAPE) || freeBytes + bytes > MAX_FREE_BYTES) {
+            GLES20.glDeleteTextures(1, new int[]{ tex }, 0);
+            return;
+        }
+        if (q == null) {
+            q = new ArrayDeque<>();
+            free.put(shapeKey(w, h), q);
+        }
+        q.addLast(tex);
+        freeBytes += bytes;
+    }
+
+    private int take(int w, int h) {
+        ArrayDeque<Integer> q = free.get(shapeKey(w, h));
+        if (q == null || q.isEmpty()) return 0;
+        freeBytes -= (long) w * h * caps.lutFormat.bytesPerTexel;
+        return q.removeLast();
+    }
+
+    /** Deletes all free textures and the staging buffer (context teardown / clear). */
+    synchronized void deleteAll() {
+        for (ArrayDeque<Integer> q : free.values()) {
+            for (int tex : q) GLES20.glDeleteTextures(1, new int[]{ tex }, 0);
+        }
+        dropAll();
+    }
+
+    /** Forgets everything without GL calls (the context is already gone). */
+    synchronized void dropAll() {
+        free.clear();
+        freeBytes = 0;
+        staging = null;
+    }
+
+    synchronized String stats() {
+        return "allocations=" + allocations + " reuses=" + reuses + " freeBytes=" + freeBytes;
+    }
+
+    // ---------- Helpers ----------
+    private ByteBuffer staging(int bytes) {
+        if (staging == null || staging.capacity() < bytes) {
+            staging = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+            Log.d(TAG, "Staging buffer grown to " + bytes + " bytes");
+        }
+        staging.clear();
+        return staging;
+    }
+
+    private static long shapeKey(int w, int h) {
+        return ((long) w << 32) | (h & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,128 @@
+// File: LutTextures.java
+package com.squeezer.app;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import androidx.annotation.Nullable;
+
+/**
+ * GL textures for one loaded LUT (see LUTLoader.loadLutTextures):
+ *  - cube:  3D LUT (lutTexture / uLUTSize / uApplyLUT), 0 for 1D-only files; a GL_TEXTURE_3D when
+ *           cube3D (GLES 3, see GlCaps), else a 2D strip
+ *  - curve: Nx1 per-channel 1D LUT or shaper (curveTexture / uCurveSize / uApplyCurve), 0 when absent
+ * Shaders apply the curve first, then the cube (shaper + 3D order).
+ * Textures uploaded while other share group contexts are live carry an upload fence: other contexts
+ * check isUploaded() / awaitUpload() before sampling them.
+ */
+public final class LutTextures {
+    public static final int CUBE_UNIT = 1;
+    public static final int CURVE_UNIT = 2;
+
+    public final int cubeTexture;
+    public final int cubeSize;
+    /** Cube is a GL_TEXTURE_3D (sampler3D variants in ShaderPrograms); false = 2D strip. */
+    public final boolean cube3D;
+    public final int curveTexture;
+    /** Texture width in texels (the 1D table may have been resampled to fit). */
+    public final int curveSize;
+
+    private volatile @Nullable GlFence uploadFence;
+    private @Nullable LutBinaryCache.Mapped source;
+
+    public LutTextures(int cubeTexture, int cubeSize, int curveTexture, int curveSize) {
+        this(cubeTexture, cubeSize, false, curveTexture, curveSize);
+    }
+
+    public LutTextures(int cubeTexture, int cubeSize, boolean cube3D, int curveTexture, int curveSize) {
+        this.cubeTexture = cubeTexture;
+        this.cubeSize = cubeSize;
+        this.cube3D = cube3D;
+        this.curveTexture = curveTexture;
+        this.curveSize = curveSize;
+    }
+
+    public boolean hasCube()  { return cubeTexture != 0 && cubeSize > 1; }
+    public boolean hasCurve() { return curveTexture != 0 && curveSize > 1; }
+    public boolean isEmpty()  { return !hasCube() && !hasCurve(); }
+
+    /** Tables these textures were uploaded from (CPU side, e.g. for GradeBaker); null if unknown. */
+    public @Nullable LutBinaryCache.Mapped source() { return source; }
+
+    void setSource(@Nullable LutBinaryCache.Mapped source) { this.source = source; }
+
+    // ---------- Upload fence ----------
+    void setUploadFence(@Nullable GlFence fence) { uploadFence = fence; }
+
+    /** True when the upload is finished on the GPU (non-blocking; always true without a fence). */
+    public boolean isUploaded() {
+        GlFence f = uploadFence;
+        if (f == null) return true;
+        if (!f.isSignaled()) return false;
+        uploadFence = null;
+        return true;
+    }
+
+    /** Blocks until the upload is finished (no-op on the uploading context). */
+    public void awaitUpload() {
+        GlFence f = uploadFence;
+        if (f != null) f.await();
+    }
+
+    /** Binds both textures on their units and sets sampler/size/flag uniforms on the current program. */
+    public void bind(int program) {
+        bindTextures();
+        set1i(program, "lutTexture", CUBE_UNIT);
+        set1f(program, "uLUTSize", hasCube() ? cubeSize : 2f);
+        set1f(program, "uApplyLUT", hasCube() ? 1f : 0f);
+        set1i(program, "curveTexture", CURVE_UNIT);
+        set1f(program, "uCurveSize", hasCurve() ? curveSize : 2f);
+        set1f(program, "uApplyCurve", hasCurve() ? 1f : 0f);
+    }
+
+    /** Re-binds the textures only (uniforms already set). */
+    public void bindTextures() {
+        if (hasCube()) {
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + CUBE_UNIT);
+            GLES20.glBindTexture(cube3D ? GLES30.GL_TEXTURE_3D : GLES20.GL_TEXTURE_2D, cubeTexture);
+        }
+        if (hasCurve()) {
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + CURVE_UNIT);
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, curveTexture);
+        }
+    }
+
+    /** Turns both LUT stages off on the current program. */
+    public static void bindNone(int program) {
+        set1f(program, "uApplyLUT", 0f);
+        set1f(program, "uApplyCurve", 0f);
+    }
+
+    /**
+     * Gives the textures back to the context's LutTexturePool (storage reused by the next upload of
+     * that shape), or deletes them when the context has no pool. Call on the owning GL thread.
+     */
+    public void release() {
+        GlFence f = uploadFence;
+        if (f != null) { f.destroy(); uploadFence = null; }
+        LutTexturePool pool = LutTexturePool.forCurrentContext();
+        if (pool != null) {
+            if (cubeTexture != 0) pool.recycle(cubeTexture, cubeSize * cubeSize, cubeSize);
+            if (curveTexture != 0) pool.recycle(curveTexture, curveSize, 1);
+            return;
+        }
+        int[] t = { cubeTexture, curveTexture };
+        if (t[0] != 0) GLES20.glDeleteTextures(1, t, 0);
+        if (t[1] != 0) GLES20.glDeleteTextures(1, t, 1);
+    }
+
+    private static void set1f(int program, String name, float v) {
+        int loc = GLES20.glGetUniformLocation(program, name);
+        if (loc >= 0) GLES20.glUniform1f(loc, v);
+    }
+
+    private static void set1i(int program, String name, int v) {
+        int loc = GLES20.glGetUniformLocation(program, name);
+        if (loc >= 0) GLES20.glUniform1i(loc, v);
+    }
+}
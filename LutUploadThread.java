@@ -0,0 +1,182 @@
+// File: LutUploadThread.java
+package com.squeezer.app;
+
+import android.content.Context;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLSurface;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background LUT loader for the preview:
+ *  - HandlerThread with its own 1x1 pbuffer context in the EglShareGroup (shares the preview's textures)
+ *  - Parse, resample and upload run here (LutManager.acquireTextures); the textures carry an upload fence
+ *    and the renderer swaps them in once it has signaled, drawing the previous look until then
+ *  - Newest request wins: a queued load superseded by a later one is skipped
+ *  - Textures handed out stay pinned until release(); quit() unpins whatever is still out
+ * start() after the preview context has become the group root, quit() before that context goes away.
+ */
+public final class LutUploadThread {
+    private static final String TAG = "LutUploadThread";
+    private static final long START_TIMEOUT_MS = 2000;
+    private static final long QUIT_TIMEOUT_MS = 1000;
+
+    /** Called on the loader thread with pinned textures (hand back with release()), or an error. */
+    public interface Callback {
+        void onLutLoaded(String lutId, @Nullable LutTextures tex, @Nullable Throwable error);
+    }
+
+    private final Context appContext;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final IdentityHashMap<LutTextures, Integer> handedOut = new IdentityHashMap<>(); // loader thread only
+
+    private EGLDisplay display = EGL14.EGL_NO_DISPLAY;
+    private EGLContext eglContext = EGL14.EGL_NO_CONTEXT;
+    private EGLSurface surface = EGL14.EGL_NO_SURFACE;
+
+    private LutUploadThread(Context ctx) {
+        appContext = ctx.getApplicationContext();
+        thread = new HandlerThread(TAG);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    // ---------- Lifecycle ----------
+    /**
+     * Starts a loader sharing with the EglShareGroup root on {@code display}. Returns null when its
+     * context can't join the group (textures would not be visible to the preview): load on the GL thread.
+     */
+    public static @Nullable LutUploadThread start(Context ctx, EGLDisplay display) {
+        LutUploadThread t = new LutUploadThread(ctx);
+        CountDownLatch ready = new CountDownLatch(1);
+        boolean[] ok = new boolean[1];
+        t.handler.post(() -> {
+            ok[0] = t.initEgl(display);
+            ready.countDown();
+        });
+        try {
+            if (ready.await(START_TIMEOUT_MS, TimeUnit.MILLISECONDS) && ok[0]) return t;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Log.w(TAG, "No shared loader context; LUTs load on the GL thread");
+        t.quit();
+        return null;
+    }
+
+    /** Unpins textures still handed out, destroys the context (leaving the group) and stops the thread. */
+    public void quit() {
+        generation.incrementAndGet(); // drop queued loads
+        handler.post(this::releaseEgl);
+        thread.quitSafely();
+        try {
+            thread.join(QUIT_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------- Loads ----------
+    /** Queues a load; any load queued before it that hasn't started yet is skipped. */
+    public void load(String lutId, int maxCubeSize, Callback callback) {
+        final int gen = generation.incrementAndGet();
+        handler.post(() -> {
+            if (gen != generation.get()) return; // superseded
+            long t0 = System.nanoTime();
+            LutTextures tex;
+            try {
+                tex = LutManager.acquireTextures(appContext, lutId, maxCubeSize);
+            } catch (Throwable t) {
+                callback.onLutLoaded(lutId, null, t);
+                return;
+            }
+            Integer n = handedOut.get(tex);
+            handedOut.put(tex, n == null ? 1 : n + 1);
+            Log.d(TAG, "Loaded " + lutId + " in " + ((System.nanoTime() - t0) / 1_000_000) + " ms");
+            callback.onLutLoaded(lutId, tex, null);
+        });
+    }
+
+    /**
+     * Unpins textures from a Callback on the loader thread, so the render thread never waits on the
+     * cache lock held during an upload. Null-safe.
+     */
+    public void release(@Nullable LutTextures tex) {
+        if (tex == null) return;
+        handler.post(() -> {
+            Integer n = handedOut.get(tex);
+            if (n == null) return;
+            if (n <= 1) handedOut.remove(tex); else handedOut.put(tex, n - 1);
+            LutManager.releaseTextures(tex);
+        });
+    }
+
+    // ---------- EGL ----------
+    private boolean initEgl(EGLDisplay rootDisplay) {
+        display = rootDisplay;
+        int[] configAttribs = {
+                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(display, configAttribs, 0, configs, 0, 1, numConfigs, 0) || numConfigs[0] <= 0) {
+            Log.e(TAG, "eglChooseConfig failed");
+            return false;
+        }
+        int[] contextAttribs = { EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE };
+        EGLContext ctx = EglShareGroup.createContext(display, configs[0], contextAttribs);
+        if (ctx == null || ctx.equals(EGL14.EGL_NO_CONTEXT)) {
+            Log.e(TAG, "eglCreateContext failed");
+            return false;
+        }
+        eglContext = ctx;
+        if (!EglShareGroup.isMember(eglContext) || !EglShareGroup.isShared()) {
+            return false; // private, or the group root itself: nobody to share the uploads with
+        }
+        int[] surfaceAttribs = { EGL14.EGL_WIDTH, 1, EGL14.EGL_HEIGHT, 1, EGL14.EGL_NONE };
+        surface = EGL14.eglCreatePbufferSurface(display, configs[0], surfaceAttribs, 0);
+        if (surface == null || surface.equals(EGL14.EGL_NO_SURFACE)
+                || !EGL14.eglMakeCurrent(display, surface, surface, eglContext)) {
+            Log.e(TAG, "Loader pbuffer setup failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+            return false;
+        }
+        return true;
+    }
+
+    private void releaseEgl() {
+        if (eglContext.equals(EGL14.EGL_NO_CONTEXT)) return;
+        boolean current = eglContext.equals(EGL14.eglGetCurrentContext());
+        if (current) {
+            for (LutTextures tex : handedOut.keySet()) {
+                for (int i = handedOut.get(tex); i > 0; i--) LutManager.releaseTextures(tex);
+            }
+        }
+        handedOut.clear();
+        LutTextureCache.onContextDestroyed(eglContext);
+        EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        if (surface != null && !surface.equals(EGL14.EGL_NO_SURFACE)) EGL14.eglDestroySurface(display, surface);
+        EGL14.eglDestroyContext(display, eglContext);
+        EGL14.eglReleaseThread();
+        eglContext = EGL14.EGL_NO_CONTEXT;
+        surface = EGL14.EGL_NO_SURFACE;
+    }
+}
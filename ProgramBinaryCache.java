@@ -0,0 +1,256 @@
+// File: ProgramBinaryCache.java
+package com.squeezer.app;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * On-disk cache of linked GL program binaries (GLES 3 glGetProgramBinary) under cacheDir/gl_programs:
+ *  - Entries are named by the SHA-1 of GL vendor, renderer, version and both shader sources, so a driver
+ *    update or any source change (generated variants, desqueeze factors) simply misses
+ *  - Warm: glProgramBinary from the file; a binary the driver rejects is deleted and the program compiled
+ *  - Cold: compile + link with the retrievable hint, then store the binary for the next launch
+ *  - On ES 2-only drivers, or before init(), this is a plain compile + link
+ * Returned programs belong to the caller. stats() reports cold vs warm creation times.
+ *
+ * File layout (big-endian): "GLPB" magic, int version, int binaryFormat, int length, byte[length].
+ */
+public final class ProgramBinaryCache {
+    private static final String TAG = "ProgramBinaryCache";
+    private static final String DIR = "gl_programs";
+    private static final String EXT = ".glbin";
+    private static final int MAGIC = 0x474C5042; // "GLPB"
+    private static final int VERSION = 1;
+    private static final int MAX_BINARY_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_FILES = 64;
+
+    private static @Nullable File sDir;
+    private static @Nullable String sDriver; // vendor|renderer|version, or "" when binaries are unsupported
+
+    private static int coldCount, warmCount, rejected;
+    private static long coldNanos, warmNanos;
+
+    private ProgramBinaryCache() {}
+
+    /** Enables the disk cache (idempotent, any thread). Without it programs are just compiled. */
+    public static synchronized void init(Context ctx) {
+        if (sDir != null) return;
+        File dir = new File(ctx.getApplicationContext().getCacheDir(), DIR);
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Can't create " + dir + "; program binaries not cached");
+            return;
+        }
+        sDir = dir;
+    }
+
+    // ---------- Public API ----------
+    /**
+     * Links a program from {@code vertexSrc} + {@code fragmentSrc} in the current context, from the
+     * stored binary when there is a valid one. Returns 0 if compiling or linking fails (logged).
+     */
+    public static int createProgram(String vertexSrc, String fragmentSrc) {
+        final long t0 = System.nanoTime();
+        final File file = entryFor(vertexSrc, fragmentSrc);
+
+        if (file != null && file.exists()) {
+            int program = loadBinary(file);
+            if (program != 0) {
+                record(true, System.nanoTime() - t0);
+                return program;
+            }
+            synchronized (ProgramBinaryCache.class) { rejected++; }
+            if (!file.delete()) Log.w(TAG, "Can't delete rejected binary " + file.getName());
+        }
+
+        int program = compile(vertexSrc, fragmentSrc, file != null);
+        if (program == 0) return 0;
+        if (file != null) storeBinary(program, file);
+        record(false, System.nanoTime() - t0);
+        return program;
+    }
+
+    /** "cold=N avg=X ms warm=M avg=Y ms rejected=K" for this process. */
+    public static synchronized String stats() {
+        return "cold=" + coldCount + " avg=" + avgMs(coldNanos, coldCount) + " ms"
+                + " warm=" + warmCount + " avg=" + avgMs(warmNanos, warmCount) + " ms"
+                + " rejected=" + rejected;
+    }
+
+    // ---------- Binary I/O ----------
+    /** Program from a stored binary, or 0 if the file is unreadable or the driver rejects it. */
+    private static int loadBinary(File file) {
+        int format;
+        byte[] bytes;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return 0;
+            format = in.readInt();
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_BINARY_BYTES) return 0;
+            bytes = new byte[length];
+            in.readFully(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Unreadable program binary " + file.getName() + ": " + e.getMessage());
+            return 0;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.nativeOrder());
+        buf.put(bytes).position(0);
+        int program = GLES20.glCreateProgram();
+        if (program == 0) return 0;
+        GLES30.glProgramBinary(program, format, buf, bytes.length);
+        int[] linked = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linked, 0);
+        if (linked[0] == 0) {
+            Log.w(TAG, "Driver rejected program binary " + file.getName() + "; recompiling");
+            GLES20.glDeleteProgram(program);
+            return 0;
+        }
+        file.setLastModified(System.currentTimeMillis()); // LRU for trim()
+        return program;
+    }
+
+    private static void storeBinary(int program, File file) {
+        int[] length = new int[1];
+        GLES20.glGetProgramiv(program, GLES30.GL_PROGRAM_BINARY_LENGTH, length, 0);
+        if (length[0] <= 0 || length[0] > MAX_BINARY_BYTES) return;
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(length[0]).order(ByteOrder.nativeOrder());
+        int[] written = new int[1];
+        int[] format = new int[1];
+        // Errors left by earlier calls (the caller's compile, texture uploads) would read as ours below.
+        // Bounded: a lost context can keep reporting an error
+        for (int i = 0; i < 16 && GLES20.glGetError() != GLES20.GL_NO_ERROR; i++) { /* drain */ }
+        GLES30.glGetProgramBinary(program, length[0], written, 0, format, 0, buf);
+        if (GLES20.glGetError() != GLES20.GL_NO_ERROR || written[0] <= 0) {
+            Log.w(TAG, "glGetProgramBinary failed; not cached");
+            return;
+        }
+        byte[] bytes = new byte[written[0]];
+        buf.position(0);
+        buf.get(bytes);
+
+        File tmp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp"); // preview + export may race
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(format[0]);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write program binary: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return;
+        }
+        trim(file.getParentFile());
+    }
+
+    /** Keeps the newest MAX_FILES entries. */
+    private static void trim(@Nullable File dir) {
+        File[] files = dir != null ? dir.listFiles((d, name) -> name.endsWith(EXT)) : null;
+        if (files == null || files.length <= MAX_FILES) return;
+        Arrays.sort(files, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        for (int i = MAX_FILES; i < files.length; i++) files[i].delete();
+    }
+
+    // ---------- Compile ----------
+    private static int compile(String vertexSrc, String fragmentSrc, boolean retrievable) {
+        int vs = ShaderUtils.loadShader(GLES20.GL_VERTEX_SHADER, vertexSrc);
+        if (vs == 0) return 0;
+        int fs = ShaderUtils.loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentSrc);
+        if (fs == 0) {
+            GLES20.glDeleteShader(vs);
+            return 0;
+        }
+
+        int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vs);
+        GLES20.glAttachShader(program, fs);
+        if (retrievable) {
+            GLES30.glProgramParameteri(program, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GLES20.GL_TRUE);
+        }
+        GLES20.glLinkProgram(program);
+
+        int[] linked = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linked, 0);
+        if (linked[0] == 0) {
+            Log.e(TAG, "Program link failed:\n" + GLES20.glGetProgramInfoLog(program));
+            GLES20.glDeleteProgram(program);
+            program = 0;
+        }
+        GLES20.glDeleteShader(vs);
+        GLES20.glDeleteShader(fs);
+        return program;
+    }
+
+    // ---------- Keys ----------
+    /** Cache file for these sources, or null when binaries can't be used in this process. */
+    private static synchronized @Nullable File entryFor(String vertexSrc, String fragmentSrc) {
+        if (sDir == null) return null;
+        if (sDriver == null) sDriver = queryDriver();
+        if (sDriver.isEmpty()) return null;
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(sDriver.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(vertexSrc.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(fragmentSrc.getBytes(StandardCharsets.UTF_8));
+            return new File(sDir, hex(md.digest()) + EXT);
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /** "vendor|renderer|version" of the current context, or "" without GLES 3 binary formats. */
+    private static String queryDriver() {
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        if (version == null || !version.startsWith("OpenGL ES ") || version.startsWith("OpenGL ES 2")) {
+            Log.d(TAG, "No program binaries on " + version);
+            return "";
+        }
+        int[] formats = new int[1];
+        GLES20.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formats, 0);
+        if (formats[0] <= 0) {
+            Log.d(TAG, "Driver exposes no program binary formats");
+            return "";
+        }
+        return GLES20.glGetString(GLES20.GL_VENDOR) + "|" + GLES20.glGetString(GLES20.GL_RENDERER) + "|" + version;
+    }
+
+    private static String hex(byte[] b) {
+        StringBuilder sb = new StringBuilder(b.length * 2);
+        for (byte x : b) sb.append(Character.forDigit((x >> 4) & 0xF, 16)).append(Character.forDigit(x & 0xF, 16));
+        return sb.toString();
+    }
+
+    // ---------- Timing ----------
+    private static synchronized void record(boolean warm, long nanos) {
+        if (warm) { warmCount++; warmNanos += nanos; } else { coldCount++; coldNanos += nanos; }
+        Log.d(TAG, (warm ? "Warm" : "Cold") + " program in " + (nanos / 1000) / 1000f + " ms (" + stats() + ")");
+    }
+
+    private static String avgMs(long nanos, int count) {
+        return count == 0 ? "-" : String.valueOf((nanos / count / 1000) / 1000f);
+    }
+}
@@ -0,0 +1,339 @@
+// File: SegmentedExport.java
+package com.squeezer.app;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Segment-parallel video export for long clips:
+ *  - segmentCount(): decoder + encoder sessions that can run at once (max supported instances of the codecs
+ *    MediaCodecList would pick, one decoder left for the preview player), capped by MAX_SEGMENTS, by
+ *    MIN_SEGMENT_US of source per segment and by free cache space for the spilled segments
+ *  - The source is split at sync samples; every segment runs on its own thread through a Chain (its own
+ *    extractor, codecs and EGL context) and spills its encoded samples to a file in cacheDir
+ *  - Stitching writes the spilled samples into the output in order, without re-encoding. Segments are
+ *    stamped on the clip's timeline and each starts on an IDR, so only the parameter sets have to match
+ *  - Limitation: a segment only gets the frames it presents in [start, next start). With open GOPs (leading
+ *    pictures after a sync sample in decode order but presented before it) both segments would drop those
+ *    frames, so splitPoints() skips such sync samples, and encode() checks the segments' frame counts
+ *    against the source's sample count as a backstop
+ * encode() returns false, with nothing written to the output, when a segment fails, the encoders'
+ * parameter sets differ or frames went missing; the caller then exports on a single chain. Formats are
+ * compared as each encoder reports one, and the first failure interrupts the other segments instead of
+ * letting them finish.
+ */
+final class SegmentedExport {
+    private static final String TAG = "SegmentedExport";
+    private static final String DIR = "export_segments";
+    static final int MAX_SEGMENTS = 4;
+    static final long MIN_SEGMENT_US = 10_000_000L;
+    private static final String[] CSD_KEYS = { "csd-0", "csd-1", "csd-2" };
+    /** Samples checked after a split for leading pictures; above the 16-frame DPB of H.264 / HEVC. */
+    private static final int REORDER_WINDOW = 32;
+
+    /** Encodes the frames presented in [startUs, endUs) into {@code sink}; runs on a segment thread. */
+    interface Chain {
+        int encode(long startUs, long endUs, ExportPipeline.Sink sink,
+                   ExportPipeline.ProgressListener progress) throws Exception;
+    }
+
+    private SegmentedExport() {}
+
+    // ---------- Planning ----------
+    /** How many segments to export {@code durationUs} of {@code input} with; 1 = single chain. */
+    static int segmentCount(Context ctx, MediaFormat input, MediaFormat output, long durationUs) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return 1; // getMaxSupportedInstances
+        int count = (int) Math.min(MAX_SEGMENTS, durationUs / MIN_SEGMENT_US);
+        if (count < 2) return 1;
+        try {
+            int decoders = maxInstances(input, false) - 1; // the preview keeps its player's decoder
+            int encoders = maxInstances(output, true);
+            count = Math.min(count, Math.min(decoders, encoders));
+        } catch (Throwable t) {
+            Log.w(TAG, "Codec capabilities unavailable: " + t.getMessage());
+            return 1;
+        }
+        // The segments are spilled before stitching: about one output size of cache space
+        long bitrate = output.containsKey(MediaFormat.KEY_BIT_RATE) ? output.getInteger(MediaFormat.KEY_BIT_RATE) : 0;
+        long spillBytes = bitrate / 8 * (durationUs / 1_000_000L + 1) * 5 / 4;
+        if (count > 1 && ctx.getCacheDir().getUsableSpace() < spillBytes) {
+            Log.w(TAG, "Not enough cache space for " + spillBytes + " bytes of segments");
+            return 1;
+        }
+        return Math.max(1, count);
+    }
+
+    private static int maxInstances(MediaFormat format, boolean encoder) {
+        String mime = format.getString(MediaFormat.KEY_MIME);
+        // Only what codec selection needs (a frame rate key breaks findDecoderForFormat on API 21)
+        MediaFormat f = MediaFormat.createVideoFormat(mime,
+                format.getInteger(MediaFormat.KEY_WIDTH), format.getInteger(MediaFormat.KEY_HEIGHT));
+        MediaCodecList list = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+        String name = encoder ? list.findEncoderForFormat(f) : list.findDecoderForFormat(f);
+        if (name == null) return 1;
+        for (MediaCodecInfo info : list.getCodecInfos()) {
+            if (info.getName().equals(name)) return info.getCapabilitiesForType(mime).getMaxSupportedInstances();
+        }
+        return 1;
+    }
+
+    /**
+     * Segment start times: sync samples near equal splits of the clip, starting with the first sample.
+     *  - A sync sample followed (in decode order) by a sample presented before it is skipped for the next
+     *    one; a split with no clean sync sample before the next split is dropped
+     * Fewer than {@code count} when the clip has too few clean sync samples. Moves {@code extractor}.
+     */
+    static long[] splitPoints(MediaExtractor extractor, long firstSampleUs, long durationUs, int count) {
+        ArrayList<Long> starts = new ArrayList<>();
+        starts.add(firstSampleUs);
+        for (int i = 1; i < count; i++) {
+            long limitUs = firstSampleUs + durationUs * (i + 1) / count; // don't run into the next split
+            extractor.seekTo(firstSampleUs + durationUs * i / count, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+            long t = extractor.getSampleTime();
+            while (t >= 0 && t < limitUs && !cleanSplit(extractor, t)) {
+                extractor.seekTo(t + 1, MediaExtractor.SEEK_TO_NEXT_SYNC);
+                long next = extractor.getSampleTime();
+                t = next > t ? next : -1;
+            }
+            if (t >= 0 && t < limitUs && t > starts.get(starts.size() - 1)) starts.add(t);
+        }
+        long[] out = new long[starts.size()];
+        for (int i = 0; i < out.length; i++) out[i] = starts.get(i);
+        return out;
+    }
+
+    /** True when none of the REORDER_WINDOW samples after the sync sample at {@code syncUs} is presented before it. */
+    private static boolean cleanSplit(MediaExtractor extractor, long syncUs) {
+        for (int i = 0; i < REORDER_WINDOW && extractor.advance(); i++) {
+            long t = extractor.getSampleTime();
+            if (t < 0) break;
+            if (t < syncUs) return false;
+        }
+        return true;
+    }
+
+    /** Source samples presented in each segment's [start, next start); earlier ones count for segment 0. */
+    private static int[] sourceFrames(MediaExtractor extractor, long[] starts) {
+        int[] counts = new int[starts.length];
+        extractor.seekTo(starts[0], MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+        for (long t = extractor.getSampleTime(); t >= 0; t = extractor.advance() ? extractor.getSampleTime() : -1) {
+            int k = 0;
+            while (k + 1 < starts.length && t >= starts[k + 1]) k++;
+            counts[k]++;
+        }
+        return counts;
+    }
+
+    // ---------- Export ----------
+    /**
+     * Encodes the clip as up to {@code count} concurrent segments and stitches them into {@code out}.
+     * Returns false without touching {@code out} when the segmented export can't be used.
+     */
+    static boolean encode(Context ctx, MediaExtractor extractor, long firstSampleUs, long durationUs, int count,
+                          Chain chain, ExportPipeline.Sink out,
+                          @Nullable ExportPipeline.ProgressListener progress) throws Exception {
+        final long[] starts = splitPoints(extractor, firstSampleUs, durationUs, count);
+        final int n = starts.length;
+        if (n < 2) return false;
+
+        File dir = new File(ctx.getCacheDir(), DIR);
+        if (!dir.exists() && !dir.mkdirs()) return false;
+
+        final long t0 = System.nanoTime();
+        final List<SegmentFile> files = new ArrayList<>();
+        final AtomicLongArray done = new AtomicLongArray(n);
+        final int[] frames = new int[n];
+        final Thread[] threads = new Thread[n];
+        final AtomicBoolean failed = new AtomicBoolean();
+        final Runnable checkFormats = () -> {
+            synchronized (files) {
+                MediaFormat first = files.get(0).format;
+                if (first == null) return; // checked again when segment 0 reports
+                for (int i = 1; i < n; i++) {
+                    MediaFormat f = files.get(i).format;
+                    if (f != null && !sameParameterSets(first, f)) {
+                        fail(failed, threads, "Segment " + i + " has different parameter sets", null);
+                        return;
+                    }
+                }
+            }
+        };
+        try {
+            synchronized (files) {
+                for (int i = 0; i < n; i++) {
+                    File file = File.createTempFile("segment" + i + "_", ".bin", dir);
+                    files.add(new SegmentFile(file, failed, checkFormats));
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                final int k = i;
+                final long startUs = starts[k];
+                final long endUs = k + 1 < n ? starts[k + 1] : Long.MAX_VALUE;
+                final long segmentOffsetUs = startUs - firstSampleUs; // encoded PTS are on the clip timeline
+                threads[k] = new Thread(() -> {
+                    try {
+                        frames[k] = chain.encode(startUs, endUs, files.get(k), ptsUs -> {
+                            done.set(k, Math.max(0, ptsUs - segmentOffsetUs));
+                            if (progress != null) progress.onProgress(sum(done));
+                        });
+                    } catch (Throwable t) {
+                        fail(failed, threads, "Segment " + k + " failed", t); // no-op when cancelled by another
+                    }
+                }, "ExportSegment" + k);
+            }
+            for (Thread t : threads) t.start(); // all created first: fail() interrupts through the array
+            final int[] expected = sourceFrames(extractor, starts); // the segments read their own extractors
+            for (Thread t : threads) t.join();
+            if (failed.get()) return false;
+
+            for (int i = 0; i < n; i++) {
+                if (files.get(i).format == null || !sameParameterSets(files.get(0).format, files.get(i).format)) {
+                    Log.w(TAG, "Segment " + i + " has no or different parameter sets; exporting on one chain");
+                    return false;
+                }
+                if (frames[i] != expected[i]) {
+                    Log.w(TAG, "Segment " + i + " encoded " + frames[i] + " of " + expected[i]
+                            + " source frames; exporting on one chain");
+                    return false;
+                }
+            }
+
+            // Stitch: one video track with segment 0's format, samples in segment order
+            out.onFormat(files.get(0).format);
+            int total = 0;
+            for (int i = 0; i < n; i++) {
+                files.get(i).copyTo(out);
+                total += frames[i];
+            }
+            ExportPipeline.logFps("segmented x" + n, total, t0);
+            return true;
+        } finally {
+            for (SegmentFile f : files) f.delete();
+        }
+    }
+
+    /** First failure wins: logs it and interrupts the other segments (their chains then release the codecs). */
+    private static void fail(AtomicBoolean failed, Thread[] threads, String reason, @Nullable Throwable t) {
+        if (!failed.compareAndSet(false, true)) return;
+        Log.w(TAG, reason + "; exporting on one chain", t);
+        for (Thread thread : threads) {
+            if (thread != null && thread != Thread.currentThread()) thread.interrupt();
+        }
+    }
+
+    private static long sum(AtomicLongArray a) {
+        long s = 0;
+        for (int i = 0; i < a.length(); i++) s += a.get(i);
+        return s;
+    }
+
+    private static boolean sameParameterSets(MediaFormat a, MediaFormat b) {
+        for (String key : CSD_KEYS) {
+            ByteBuffer x = a.containsKey(key) ? a.getByteBuffer(key) : null;
+            ByteBuffer y = b.containsKey(key) ? b.getByteBuffer(key) : null;
+            if (x == null ? y != null : !x.equals(y)) return false;
+        }
+        return true;
+    }
+
+    // ---------- Segment files ----------
+    /**
+     * Encoded output of one segment: the format in memory, the samples in a file as
+     * (long pts, int flags, int size, size bytes) records.
+     */
+    private static final class SegmentFile implements ExportPipeline.Sink {
+        private static final int HEADER_BYTES = 16;
+
+        private final File file;
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        private final AtomicBoolean cancelled;
+        private final Runnable onFormat;
+        volatile @Nullable MediaFormat format;
+
+        /** {@code onFormat} runs when the encoder reports its format; samples are refused once {@code cancelled}. */
+        SegmentFile(File file, AtomicBoolean cancelled, Runnable onFormat) throws IOException {
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+            this.cancelled = cancelled;
+            this.onFormat = onFormat;
+        }
+
+        @Override public void onFormat(MediaFormat format) {
+            this.format = format;
+            onFormat.run();
+        }
+
+        @Override public void onSample(ByteBuffer data, MediaCodec.BufferInfo info) throws IOException {
+            if (cancelled.get()) throw new CancellationException("Segmented export cancelled");
+            header.clear();
+            header.putLong(info.presentationTimeUs).putInt(info.flags).putInt(info.size).flip();
+            while (header.hasRemaining()) channel.write(header);
+            while (data.hasRemaining()) channel.write(data);
+        }
+
+        /** Replays the samples into {@code out} (key frame flag only; end of stream belongs to the last segment). */
+        void copyTo(ExportPipeline.Sink out) throws Exception {
+            channel.position(0);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.nativeOrder());
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            while (true) {
+                header.clear();
+                if (!readFully(header, true)) break;
+                header.flip();
+                long pts = header.getLong();
+                int flags = header.getInt() & MediaCodec.BUFFER_FLAG_KEY_FRAME;
+                int size = header.getInt();
+                if (size > buffer.capacity()) buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+                buffer.clear();
+                buffer.limit(size);
+                readFully(buffer, false);
+                buffer.flip();
+                info.set(0, size, pts, flags);
+                out.onSample(buffer, info);
+            }
+        }
+
+        /** Fills {@code b}; false at a clean end of file when {@code eofOk}. */
+        private boolean readFully(ByteBuffer b, boolean eofOk) throws IOException {
+            boolean any = false;
+            while (b.hasRemaining()) {
+                int r = channel.read(b);
+                if (r < 0) {
+                    if (eofOk && !any) return false;
+                    throw new EOFException("Truncated segment " + file.getName());
+                }
+                any |= r > 0;
+            }
+            return true;
+        }
+
+        void delete() {
+            try { raf.close(); } catch (IOException ignored) {}
+            if (!file.delete()) Log.w(TAG, "Can't delete " + file.getName());
+        }
+    }
+}
@@ -0,0 +1,258 @@
+// File: ShaderPrograms.java
+package com.squeezer.app;
+
+import android.opengl.EGL14;
+import android.opengl.EGLContext;
+import android.opengl.GLES20;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Specialized LUT / grade programs instead of one uber-shader branching on float flags:
+ *  - A feature mask (OES or 2D source, curve, cube, grade, vignette) selects the stages that are emitted;
+ *    disabled stages cost nothing, so a neutral preview is a single texture fetch
+ *  - Images have their own grade stage (IMAGE_GRADE: hue shift clamped to 0..0.04, Rec.601 saturation,
+ *    then contrast), used by both LUTImageProcessor's preview and its export
+ *  - A GL_TEXTURE_3D cube (LUT3D, GLES 3) makes the whole program ESSL 3.00: one hardware-trilinear
+ *    texture() per pixel instead of two strip taps and the slice mix
+ *  - Uniform names are the ones LutTextures.bind() and GradeUniforms set, whatever the stage mask
+ *  - Programs are created on first use (ProgramBinaryCache: stored driver binary, else compiled) and
+ *    cached per EGL context. Not per share group: uniform values are program state, and preview and
+ *    exporters set different grades concurrently
+ *  - Cached programs are owned here: don't glDeleteProgram them; LutTextureCache.onContextDestroyed()
+ *    drops the context's programs
+ * Call from a thread with the owning context current.
+ */
+public final class ShaderPrograms {
+    private static final String TAG = "ShaderPrograms";
+
+    /** Video frame (samplerExternalOES); without it the source is a sampler2D (images). */
+    public static final int OES = 1;
+    /** 1D curve / shaper (curveTexture, uCurveSize). */
+    public static final int CURVE = 1 << 1;
+    /** 3D LUT strip (lutTexture, uLUTSize). */
+    public static final int LUT = 1 << 2;
+    /** Per-pixel grade math (off when neutral or baked into the LUT by GradeBaker). */
+    public static final int GRADE = 1 << 3;
+    /** Radial vignette (uVignetteStrength, uVignetteSoftness). */
+    public static final int VIGNETTE = 1 << 4;
+    /** 3D LUT as a sampler3D (lutTexture, uLUTSize); ESSL 3.00 program. Instead of LUT. */
+    public static final int LUT3D = 1 << 5;
+    /** Image grade: hue shift, Rec.601 saturation, contrast (uHueShift, uSaturation, uContrast). Not with GRADE. */
+    public static final int IMAGE_GRADE = 1 << 6;
+
+    private static final Map<EGLContext, SparseIntArray> sByContext = new HashMap<>();
+
+    private ShaderPrograms() {}
+
+    // ---------- Feature selection ----------
+    /**
+     * Mask for a source, LUT textures (null = none), whether the grade math must run and the vignette
+     * strength. Pass {@code grade} false when it is neutral or baked.
+     */
+    public static int features(boolean oes, @Nullable LutTextures lut, boolean grade, float vignetteStrength) {
+        int f = oes ? OES : 0;
+        if (lut != null && lut.hasCurve()) f |= CURVE;
+        if (lut != null && lut.hasCube()) f |= lut.cube3D ? LUT3D : LUT;
+        if (grade) f |= GRADE;
+        if (vignetteStrength > 0f) f |= VIGNETTE;
+        return f;
+    }
+
+    /**
+     * Mask for a still image (sampler2D source): LUT textures (null = none) and the image grade, skipped when
+     * neutral. The hue shift is clamped to 0..0.04 in the shader, so a negative one is neutral too.
+     */
+    public static int imageFeatures(@Nullable LutTextures lut, float hueShift, float contrast, float saturation) {
+        int f = features(false, lut, false, 0f);
+        if (hueShift > 0f || contrast != 1f || saturation != 1f) f |= IMAGE_GRADE;
+        return f;
+    }
+
+    // ---------- Program cache ----------
+    /**
+     * Program for {@code features} in the current context, compiled on first use. Falls back to the
+     * plain source program if a variant doesn't compile; 0 only if that fails too.
+     */
+    public static int get(int features) {
+        EGLContext ctx = EGL14.eglGetCurrentContext();
+        if (ctx == null || ctx.equals(EGL14.EGL_NO_CONTEXT)) {
+            throw new IllegalStateException("ShaderPrograms: no EGL context current on this thread");
+        }
+        SparseIntArray programs;
+        synchronized (sByContext) {
+            programs = sByContext.get(ctx);
+            if (programs == null) {
+                programs = new SparseIntArray();
+                sByContext.put(ctx, programs);
+            }
+        }
+        int p = programs.get(features, 0);
+        if (p != 0) return p;
+
+        p = ProgramBinaryCache.createProgram(vertexSource(features), fragmentSource(features));
+        if (p == 0) {
+            int plain = features & OES;
+            Log.e(TAG, "Variant 0x" + Integer.toHexString(features) + " failed; using the plain source program");
+            p = plain != features ? get(plain) : 0;
+            return p; // not cached under this mask: a later context may compile it
+        }
+        programs.put(features, p);
+        Log.d(TAG, "Compiled variant 0x" + Integer.toHexString(features) + " (" + programs.size() + " in context)");
+        return p;
+    }
+
+    /** Forgets a context's programs, deleting them when it is current on this thread. */
+    static void onContextDestroyed(@Nullable EGLContext ctx) {
+        if (ctx == null) return;
+        SparseIntArray programs;
+        synchronized (sByContext) { programs = sByContext.remove(ctx); }
+        if (programs == null || !ctx.equals(EGL14.eglGetCurrentContext())) return;
+        for (int i = 0; i < programs.size(); i++) GLES20.glDeleteProgram(programs.valueAt(i));
+    }
+
+    // ---------- Generator ----------
+    /** ShaderUtils.getVertexShaderCode, or its ESSL 3.00 twin for LUT3D programs (stages must match). */
+    public static String vertexSource(int features) {
+        if ((features & LUT3D) == 0) return ShaderUtils.getVertexShaderCode();
+        return "#version 300 es\n"
+                + "in vec2 aPosition;\n"
+                + "in vec2 aTexCoord;\n"
+                + "uniform mat4 uMVPMatrix;\n"
+                + "out vec2 vTexCoord;\n"
+                + "void main(){\n"
+                + "  vTexCoord = aTexCoord;\n"
+                + "  gl_Position = uMVPMatrix * vec4(aPosition, 0.0, 1.0);\n"
+                + "}\n";
+    }
+
+    /** Fragment source with only the stages in {@code features}: curve, LUT, grade / image grade, vignette, clamp. */
+    public static String fragmentSource(int features) {
+        final boolean oes = (features & OES) != 0;
+        final boolean es3 = (features & LUT3D) != 0;
+        final String tex = es3 ? "texture" : "texture2D";
+        StringBuilder s = new StringBuilder(2048);
+        if (es3) {
+            s.append("#version 300 es\n");
+            if (oes) s.append("#extension GL_OES_EGL_image_external_essl3 : require\n");
+        } else if (oes) {
+            s.append("#extension GL_OES_EGL_image_external : require\n");
+        }
+        s.append("precision mediump float;\n");
+        s.append("precision mediump sampler2D;\n");
+        if (es3) s.append("precision mediump sampler3D;\n");
+        if (oes) s.append("precision mediump samplerExternalOES;\n");
+        s.append(es3 ? "in vec2 vTexCoord;\nout vec4 fragColor;\n" : "varying vec2 vTexCoord;\n");
+        s.append(oes ? "uniform samplerExternalOES uTexture;\n" : "uniform sampler2D uTexture;\n");
+
+        if ((features & CURVE) != 0) {
+            s.append("uniform sampler2D curveTexture;\n")
+             .append("uniform float uCurveSize;\n")
+             .append("vec3 sampleCurve(vec3 color){\n")
+             .append("  vec3 x = (clamp(color, 0.0, 1.0) * (uCurveSize - 1.0) + 0.5) / uCurveSize;\n")
+             .append("  return vec3(").append(tex).append("(curveTexture, vec2(x.r, 0.5)).r,\n")
+             .append("              ").append(tex).append("(curveTexture, vec2(x.g, 0.5)).g,\n")
+             .append("              ").append(tex).append("(curveTexture, vec2(x.b, 0.5)).b);\n")
+             .append("}\n");
+        }
+        if ((features & LUT3D) != 0) {
+            // Texel centres: lattice point i sits at (i + 0.5) / size
+            s.append("uniform sampler3D lutTexture;\n")
+             .append("uniform float uLUTSize;\n")
+             .append("vec3 sampleLUT(vec3 color){\n")
+             .append("  vec3 uvw = (clamp(color, 0.0, 1.0) * (uLUTSize - 1.0) + 0.5) / uLUTSize;\n")
+             .append("  return texture(lutTexture, uvw).rgb;\n")
+             .append("}\n");
+        } else if ((features & LUT) != 0) {
+            // 2D strip: row g, column r + b*size; blue is blended by hand between two slices
+            s.append("uniform sampler2D lutTexture;\n")
+             .append("uniform float uLUTSize;\n")
+             .append("vec3 sampleLUT(vec3 color){\n")
+             .append("  float size = uLUTSize; float n = size - 1.0;\n")
+             .append("  vec3 c = clamp(color, 0.0, 1.0) * n;\n")
+             .append("  float b0 = floor(c.b); float b1 = min(b0+1.0, n); float bf = c.b - b0;\n")
+             .append("  float x0 = c.r + b0*size; float x1 = c.r + b1*size; float y = c.g;\n")
+             .append("  vec2 uv0 = vec2((x0+0.5)/(size*size), (y+0.5)/size);\n")
+             .append("  vec2 uv1 = vec2((x1+0.5)/(size*size), (y+0.5)/size);\n")
+             .append("  return mix(texture2D(lutTexture, uv0).rgb, texture2D(lutTexture, uv1).rgb, bf);\n")
+             .append("}\n");
+        }
+        if ((features & GRADE) != 0) {
+            s.append("uniform float uContrast;\n")
+             .append("uniform float uSaturation;\n")
+             .append("uniform float uTint;\n")
+             .append("uniform float uExposure;\n")
+             .append("uniform float uVibrance;\n")
+             .append("uniform float uTemp;\n")
+             .append("uniform float uTintGM;\n")
+             .append("uniform float uHighlightRoll;\n")
+             .append("vec3 grade(vec3 c){\n")
+             .append("  c *= exp2(uExposure);\n")
+             .append("  c += vec3(uTemp*0.08, 0.0, -uTemp*0.08);\n")
+             .append("  c += vec3(-uTintGM*0.06, uTintGM*0.06, 0.0);\n")
+             .append("  float l = dot(c, vec3(0.2126,0.7152,0.0722));\n")
+             .append("  float k = clamp(uVibrance*(1.0 - length(c - vec3(l))), -1.0, 1.0);\n")
+             .append("  c = mix(vec3(l), c, 1.0 + k);\n")
+             .append("  c = (c - 0.5) * uContrast + 0.5;\n")
+             .append("  l = dot(c, vec3(0.2126,0.7152,0.0722));\n")
+             .append("  c = mix(vec3(l), c, uSaturation);\n")
+             .append("  c += vec3(uTint);\n")
+             .append("  vec3 t = smoothstep(0.7, 1.0, c);\n")
+             .append("  return mix(c, 1.0 - (1.0 - c)*(1.0 - t), max(uHighlightRoll, 0.0));\n")
+             .append("}\n");
+        }
+        if ((features & IMAGE_GRADE) != 0 && (features & GRADE) == 0) {
+            s.append("uniform float uHueShift;\n")
+             .append("uniform float uContrast;\n")
+             .append("uniform float uSaturation;\n")
+             .append("vec3 rgb2hsv(vec3 c){\n")
+             .append("  vec4 K = vec4(0., -1./3., 2./3., -1.);\n")
+             .append("  vec4 p = mix(vec4(c.bg, K.wz), vec4(c.gb, K.xy), step(c.b, c.g));\n")
+             .append("  vec4 q = mix(vec4(p.xyw, c.r), vec4(c.r, p.yzx), step(p.x, c.r));\n")
+             .append("  float d = q.x - min(q.w, q.y);\n")
+             .append("  float e = 1e-10;\n")
+             .append("  return vec3(abs(q.z + (q.w - q.y)/(6.*d+e)), d/(q.x+e), q.x);\n")
+             .append("}\n")
+             .append("vec3 hsv2rgb(vec3 c){\n")
+             .append("  vec4 K = vec4(1., 2./3., 1./3., 3.);\n")
+             .append("  vec3 p = abs(fract(c.xxx + K.xyz) * 6. - K.www);\n")
+             .append("  return c.z * mix(K.xxx, clamp(p - K.xxx, 0., 1.), c.y);\n")
+             .append("}\n")
+             .append("vec3 imageGrade(vec3 c){\n")
+             .append("  vec3 hsv = rgb2hsv(c);\n")
+             .append("  hsv.x = fract(hsv.x + clamp(uHueShift, 0.0, 0.04));\n")
+             .append("  c = hsv2rgb(hsv);\n")
+             .append("  c = mix(vec3(dot(c, vec3(0.299,0.587,0.114))), c, uSaturation);\n")
+             .append("  return (c - 0.5) * uContrast + 0.5;\n")
+             .append("}\n");
+        }
+        if ((features & VIGNETTE) != 0) {
+            s.append("uniform float uVignetteStrength;\n")
+             .append("uniform float uVignetteSoftness;\n")
+             .append("vec3 vignette(vec3 c, vec2 uv){\n")
+             .append("  float soft = max(0.0001, uVignetteSoftness);\n")
+             .append("  float vig = 1.0 - smoothstep(0.5 - soft, 0.5 + soft, length(uv - 0.5));\n")
+             .append("  return c * mix(1.0, vig, uVignetteStrength);\n")
+             .append("}\n");
+        }
+
+        s.append("void main(){\n")
+         .append("  vec4 src = ").append(tex).append("(uTexture, vTexCoord);\n");
+        final String out = es3 ? "fragColor" : "gl_FragColor";
+        if ((features & (CURVE | LUT | LUT3D | GRADE | IMAGE_GRADE | VIGNETTE)) == 0) {
+            return s.append("  ").append(out).append(" = src;\n}\n").toString();
+        }
+        s.append("  vec3 c = src.rgb;\n");
+        if ((features & CURVE) != 0) s.append("  c = sampleCurve(c);\n");
+        if ((features & (LUT | LUT3D)) != 0) s.append("  c = sampleLUT(c);\n");
+        if ((features & GRADE) != 0) s.append("  c = grade(c);\n");
+        else if ((features & IMAGE_GRADE) != 0) s.append("  c = imageGrade(c);\n");
+        if ((features & VIGNETTE) != 0) s.append("  c = vignette(c, vTexCoord);\n");
+        return s.append("  ").append(out).append(" = vec4(clamp(c, 0.0, 1.0), src.a);\n}\n").toString();
+    }
+}
@@ -0,0 +1,144 @@
+// File: ThreeDlFormat.java
+package com.squeezer.app;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Autodesk / Lustre .3dl:
+ *  - optional "3DMESH" / "Mesh <inBits> <outBits>" header, '#' comments
+ *  - first numeric line is the input mesh (N integer breakpoints → N³ cube)
+ *  - N³ integer "R G B" rows, blue varying fastest (reordered to .cube red-fastest)
+ *  - output scale from "Mesh" out bits, else inferred from the largest value (10/12/16 bit)
+ * The mesh is treated as uniform; non-uniform breakpoints are not resampled.
+ */
+final class ThreeDlFormat implements LutFormat {
+    private static final int MAX_SIZE = 256;
+
+    @Override public String name() { return "3dl"; }
+
+    @Override public String[] extensions() { return new String[]{ "3dl" }; }
+
+    @Override public boolean sniff(byte[] head, int len) {
+        String line = LutFormats.firstMeaningfulLine(head, len);
+        if (line == null) return false;
+        if (line.startsWith("3DMESH") || line.startsWith("Mesh ")) return true;
+        String[] t = line.split("\\s+");
+        if (t.length < 4 || !"0".equals(t[0])) return false;
+        for (String s : t) if (!isNumeric(s)) return false;
+        return true;
+    }
+
+    @Override public LutTable read(InputStream in) throws IOException {
+        BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        int outBits = 0;
+        int size = -1;
+        int[] values = null; // size³ * 3, file order
+        int rows = 0;
+        int max = 0;
+        int lineNo = 0;
+        String line;
+        while ((line = r.readLine()) != null) {
+            lineNo++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] t = line.split("\\s+");
+            if (isKeyword(t[0])) {
+                if (t[0].equals("Mesh")) outBits = meshOutBits(t, lineNo);
+                continue; // 3DMESH, LUT8, gamma and other vendor keywords
+            }
+            if (size < 0) {
+                size = t.length;
+                if (size < 2 || size > MAX_SIZE) {
+                    throw CubeParseException.atLine("Invalid 3DL mesh size " + size, lineNo);
+                }
+                values = new int[size * size * size * 3];
+                continue;
+            }
+            if (t.length != 3) throw CubeParseException.atLine("Expected 3 integers", lineNo);
+            if (rows * 3 >= values.length) {
+                throw CubeParseException.rowCount("Invalid RGB count", size * size * size, rows + 1);
+            }
+            for (int k = 0; k < 3; k++) {
+                int v;
+                try {
+                    v = Integer.parseInt(t[k]);
+                } catch (NumberFormatException e) {
+                    throw CubeParseException.atLine("Invalid integer '" + t[k] + "'", lineNo);
+                }
+                if (v < 0) throw CubeParseException.atLine("Negative value " + v, lineNo);
+                if (v > max) max = v;
+                values[rows * 3 + k] = v;
+            }
+            rows++;
+        }
+
+        if (size < 0) throw new IOException("3DL: no mesh line");
+        int expected = size * size * size;
+        if (rows != expected) throw CubeParseException.rowCount("Invalid RGB count", expected, rows);
+
+        int scaleMax = outBits > 0 ? (1 << outBits) - 1
+                : max <= 1023 ? 1023 : max <= 4095 ? 4095 : 65535;
+        float k = 1f / scaleMax;
+        float[] table = new float[expected * 3];
+        int src = 0;
+        for (int ri = 0; ri < size; ri++) {
+            for (int gi = 0; gi < size; gi++) {
+                for (int bi = 0; bi < size; bi++, src += 3) {
+                    int dst = ((bi * size + gi) * size + ri) * 3;
+                    table[dst]     = values[src] * k;
+                    table[dst + 1] = values[src + 1] * k;
+                    table[dst + 2] = values[src + 2] * k;
+                }
+            }
+        }
+        return new LutTable(null, size, table, 0, null, new float[]{0f, 0f, 0f}, new float[]{1f, 1f, 1f});
+    }
+
+    @Override public LutInfo scanHeader(InputStream in) throws IOException {
+        BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        String line;
+        while ((line = r.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] t = line.split("\\s+");
+            if (isKeyword(t[0])) continue;
+            int size = t.length;
+            if (size < 2 || size > MAX_SIZE) throw new IOException("Invalid 3DL mesh size " + size);
+            return new LutInfo(null, size, 0, new float[]{0f, 0f, 0f}, new float[]{1f, 1f, 1f});
+        }
+        throw new IOException("3DL: no mesh line");
+    }
+
+    // ---------- Helpers ----------
+    /** "Mesh <inBits> <outBits>" → outBits (0 if absent). */
+    private static int meshOutBits(String[] t, int lineNo) throws IOException {
+        if (t.length < 3) return 0;
+        try {
+            int bits = Integer.parseInt(t[2]);
+            if (bits < 1 || bits > 16) throw CubeParseException.atLine("Invalid 3DL output depth " + bits, lineNo);
+            return bits;
+        } catch (NumberFormatException e) {
+            throw CubeParseException.atLine("Invalid Mesh line", lineNo);
+        }
+    }
+
+    /** "3DMESH", "Mesh", "LUT8", ...: any token with a letter (numbers are validated by the parser). */
+    private static boolean isKeyword(String s) {
+        for (int i = 0; i < s.length(); i++) if (Character.isLetter(s.charAt(i))) return true;
+        return false;
+    }
+
+    /** Unsigned integer token. */
+    private static boolean isNumeric(String s) {
+        if (s.isEmpty()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+// File: CubeParserBenchmark.java
+package com.squeezer.app;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parse time and allocation of CubeParser at 17³, 33³ and 65³, next to the old
+ * readLine / split("\\s+") / List<Float> loaders it replaced:
+ *  - stream: CubeParser.parse(InputStream), the LUTLoader / picker path
+ *  - buffer: CubeParser.parse(ByteBuffer), the LutManager path (parallel above ~4 MB)
+ *  - legacy: the previous line-by-line parser, kept here as the baseline only
+ * Allocation is the calling thread's (com.sun.management.ThreadMXBean), so the buffer column leaves out
+ * what the fork-join workers allocate. Run with: java com.squeezer.app.CubeParserBenchmark [iterations]
+ */
+public final class CubeParserBenchmark {
+    private static final int[] SIZES = { 17, 33, 65 };
+    /** Keeps the parse results observable so the JIT can't drop them. */
+    private static volatile int blackhole;
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        System.out.println(String.format(Locale.US, "%-5s %-7s %10s %14s", "size", "parser", "ms/parse", "bytes/parse"));
+        for (int n : SIZES) {
+            byte[] bytes = CubeParserTest.randomCube(n, n).getBytes(StandardCharsets.US_ASCII);
+            report(n, "stream", iterations, () -> CubeParser.parse(new ByteArrayInputStream(bytes)).data.length);
+            report(n, "buffer", iterations, () -> CubeParser.parse(ByteBuffer.wrap(bytes)).data.length);
+            report(n, "legacy", iterations, () -> legacyParse(bytes).size());
+        }
+    }
+
+    private interface Parse {
+        int run() throws IOException;
+    }
+
+    private static void report(int n, String name, int iterations, Parse parse) throws IOException {
+        int sink = 0;
+        for (int i = 0; i < Math.max(3, iterations / 4); i++) sink += parse.run(); // warm up
+
+        long bytes0 = allocatedBytes();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink += parse.run();
+        long nanos = System.nanoTime() - t0;
+        long bytes = allocatedBytes() - bytes0;
+
+        blackhole = sink;
+        System.out.println(String.format(Locale.US, "%-5s %-7s %10.2f %14d", n + "³", name,
+                nanos / 1e6 / iterations, bytes / iterations));
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /** The pre-CubeParser loader: one String and one String[] per line, boxed floats. */
+    private static List<Float> legacyParse(byte[] bytes) throws IOException {
+        List<Float> values = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("TITLE")
+                        || line.startsWith("LUT_3D_SIZE")) continue;
+                String[] parts = line.split("\\s+");
+                if (parts.length == 3) {
+                    values.add(Float.parseFloat(parts[0]));
+                    values.add(Float.parseFloat(parts[1]));
+                    values.add(Float.parseFloat(parts[2]));
+                }
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,246 @@
+// File: CubeParserTest.java
+package com.squeezer.app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * JVM tests for CubeParser (plain Java, no Android classes besides androidx.annotation):
+ *  - Header keywords, comments, line endings and number syntax
+ *  - 1D / 3D / Resolve 1D+3D layouts and a late LUT_3D_SIZE
+ *  - CubeParseException line numbers and row counts
+ *  - Stream, heap, direct and parallel (large buffer) parses agree, and match Float.parseFloat
+ */
+public class CubeParserTest {
+
+    // ---------- Header / syntax ----------
+    @Test public void parsesIdentityCubeWithHeader() throws IOException {
+        LutTable t = parse("TITLE \"Identity\"\n"
+                + "DOMAIN_MIN 0 0 0\nDOMAIN_MAX 1 1 1\nLUT_3D_SIZE 2\n"
+                + identityRows(2));
+        assertEquals("Identity", t.title);
+        assertEquals(2, t.size);
+        assertTrue(t.has3D());
+        assertFalse(t.has1D());
+        assertArrayEquals(identity(2), t.data, 0f);
+        assertArrayEquals(new float[] { 0, 0, 0 }, t.domainMin, 0f);
+        assertArrayEquals(new float[] { 1, 1, 1 }, t.domainMax, 0f);
+    }
+
+    @Test public void skipsCommentsBlankLinesBomAndCrlf() throws IOException {
+        String text = "﻿# comment\r\n; another\r\n// and another\r\n\r\n"
+                + "lut_3d_size 2\r\n\t \r\n" + identityRows(2).replace("\n", "\r\n") + "# trailing\r\n";
+        LutTable t = parse(text);
+        assertEquals(2, t.size);
+        assertArrayEquals(identity(2), t.data, 0f);
+    }
+
+    @Test public void parsesNumberSyntax() throws IOException {
+        LutTable t = parse("LUT_1D_SIZE 4\n"
+                + "+0 -0.0 .5\n"
+                + "1e-1 2.5E+0 -3e2\n"
+                + "0.000123456789 123456789012345678901 1.\n"
+                + "  7   8\t9  \n");
+        assertArrayEquals(new float[] {
+                0f, -0f, 0.5f,
+                0.1f, 2.5f, -300f,
+                0.000123456789f, 123456789012345678901f, 1f,
+                7f, 8f, 9f }, t.data1D, 0f);
+    }
+
+    @Test public void readsInputRangeAndIgnoresUnknownKeywords() throws IOException {
+        LutTable t = parse("LUT_3D_INPUT_RANGE -0.25 1.5\nLUT_IN_VIDEO_RANGE\nLUT_3D_SIZE 2\n" + identityRows(2));
+        assertArrayEquals(new float[] { -0.25f, -0.25f, -0.25f }, t.domainMin, 0f);
+        assertArrayEquals(new float[] { 1.5f, 1.5f, 1.5f }, t.domainMax, 0f);
+        assertNull(t.title);
+    }
+
+    // ---------- Layouts ----------
+    @Test public void parsesOneDimensionalCurve() throws IOException {
+        LutTable t = parse("LUT_1D_SIZE 3\n0 0 0\n0.5 0.4 0.3\n1 1 1\n");
+        assertEquals(3, t.size1D);
+        assertEquals(0, t.size);
+        assertFalse(t.has3D());
+        assertArrayEquals(new float[] { 0, 0, 0, 0.5f, 0.4f, 0.3f, 1, 1, 1 }, t.data1D, 0f);
+    }
+
+    @Test public void parsesResolveLayoutWithShaperFirst() throws IOException {
+        LutTable t = parse("LUT_1D_SIZE 2\nLUT_3D_SIZE 2\n0 0 0\n1 1 1\n" + identityRows(2));
+        assertEquals(2, t.size1D);
+        assertEquals(2, t.size);
+        assertArrayEquals(new float[] { 0, 0, 0, 1, 1, 1 }, t.data1D, 0f);
+        assertArrayEquals(identity(2), t.data, 0f);
+    }
+
+    @Test public void acceptsSizeAfterData() throws IOException {
+        LutTable t = parse(identityRows(2) + "LUT_3D_SIZE 2\n");
+        assertEquals(2, t.size);
+        assertArrayEquals(identity(2), t.data, 0f);
+    }
+
+    // ---------- Errors ----------
+    @Test public void reportsMissingSize() {
+        CubeParseException e = assertThrows(CubeParseException.class, () -> parse("0 0 0\n"));
+        assertTrue(e.getMessage().contains("LUT_3D_SIZE"));
+    }
+
+    @Test public void reportsRowCountMismatch() {
+        CubeParseException e = assertThrows(CubeParseException.class, () -> parse("LUT_3D_SIZE 2\n0 0 0\n1 1 1\n"));
+        assertTrue(e.isRowCountMismatch());
+        assertEquals(8, e.getExpectedRows());
+        assertEquals(2, e.getActualRows());
+        assertEquals(-1, e.getLine());
+    }
+
+    @Test public void reportsMalformedRowLine() {
+        CubeParseException e = assertThrows(CubeParseException.class,
+                () -> parse("LUT_3D_SIZE 2\n# c\n0 0 0\n1 x 1\n"));
+        assertEquals(4, e.getLine());
+        assertFalse(e.isRowCountMismatch());
+        assertTrue(e.getMessage().endsWith("(line 4)"));
+
+        assertEquals(2, assertThrows(CubeParseException.class, () -> parse("LUT_3D_SIZE 2\n0 0\n")).getLine());
+        assertEquals(2, assertThrows(CubeParseException.class, () -> parse("LUT_3D_SIZE 2\n0 1e 0\n")).getLine());
+    }
+
+    @Test public void rejectsOutOfRangeSizes() {
+        assertThrows(CubeParseException.class, () -> parse("LUT_3D_SIZE 1\n0 0 0\n"));
+        assertThrows(CubeParseException.class, () -> parse("LUT_3D_SIZE 257\n"));
+        assertThrows(CubeParseException.class, () -> parse("LUT_1D_SIZE 65537\n"));
+        assertThrows(CubeParseException.class, () -> parse("LUT_3D_SIZE x\n"));
+    }
+
+    @Test public void rejectsNullSources() {
+        assertThrows(IOException.class, () -> CubeParser.parse((InputStream) null));
+        assertThrows(IOException.class, () -> CubeParser.parse((ByteBuffer) null));
+    }
+
+    // ---------- Sources ----------
+    @Test public void streamHeapAndDirectAgree() throws IOException {
+        byte[] bytes = randomCube(17, 1).getBytes(StandardCharsets.US_ASCII);
+        LutTable stream = CubeParser.parse(new ByteArrayInputStream(bytes));
+        LutTable heap = CubeParser.parse(ByteBuffer.wrap(bytes));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        LutTable fromDirect = CubeParser.parse(direct);
+        assertArrayEquals(stream.data, heap.data, 0f);
+        assertArrayEquals(stream.data, fromDirect.data, 0f);
+    }
+
+    @Test public void parallelParseMatchesSequential() throws IOException {
+        // 65³ is well above the parallel threshold for buffer sources
+        byte[] bytes = randomCube(65, 2).getBytes(StandardCharsets.US_ASCII);
+        LutTable sequential = CubeParser.parse(new ByteArrayInputStream(bytes));
+        LutTable parallel = CubeParser.parse(ByteBuffer.wrap(bytes));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        LutTable parallelDirect = CubeParser.parse(direct);
+        assertEquals(65 * 65 * 65 * 3, parallel.data.length);
+        assertArrayEquals(sequential.data, parallel.data, 0f);
+        assertArrayEquals(sequential.data, parallelDirect.data, 0f);
+    }
+
+    @Test public void parallelParseReportsGlobalLine() {
+        String text = randomCube(65, 3);
+        int cut = text.length() * 3 / 4;
+        int lineStart = text.lastIndexOf('\n', cut) + 1;
+        int badLine = 1;
+        for (int i = 0; i < lineStart; i++) if (text.charAt(i) == '\n') badLine++;
+        String broken = text.substring(0, lineStart) + "0 bad 0" + text.substring(text.indexOf('\n', lineStart));
+        CubeParseException e = assertThrows(CubeParseException.class,
+                () -> CubeParser.parse(ByteBuffer.wrap(broken.getBytes(StandardCharsets.US_ASCII))));
+        assertEquals(badLine, e.getLine());
+    }
+
+    @Test public void floatsMatchFloatParseFloat() throws IOException {
+        Random r = new Random(4);
+        StringBuilder sb = new StringBuilder("LUT_1D_SIZE 3000\n");
+        String[] tokens = new String[9000];
+        for (int i = 0; i < tokens.length; i++) {
+            double v = (r.nextDouble() - 0.25) * Math.pow(10, r.nextInt(9) - 4);
+            tokens[i] = i % 3 == 2 ? String.format(Locale.US, "%.9e", v) : String.format(Locale.US, "%.9f", v);
+            sb.append(tokens[i]).append(i % 3 == 2 ? '\n' : ' ');
+        }
+        LutTable t = parse(sb.toString());
+        for (int i = 0; i < tokens.length; i++) {
+            float expected = Float.parseFloat(tokens[i]);
+            assertEquals(tokens[i], expected, t.data1D[i], Math.ulp(expected));
+        }
+    }
+
+    // ---------- Header scan ----------
+    @Test public void scanHeaderStopsAtData() throws IOException {
+        LutInfo info = CubeParser.scanHeader(stream("TITLE \"Look\"\nLUT_1D_SIZE 4096\nLUT_3D_SIZE 65\n"
+                + "DOMAIN_MAX 2 2 2\n0 0 0\nthis is never read\n"));
+        assertEquals("Look", info.title);
+        assertEquals(65, info.size);
+        assertEquals(4096, info.size1D);
+        assertArrayEquals(new float[] { 2, 2, 2 }, info.domainMax, 0f);
+        assertEquals("1D 4096 + 65³", info.describe());
+    }
+
+    @Test public void scanHeaderReportsLateSizeAsZero() throws IOException {
+        LutInfo info = CubeParser.scanHeader(stream(identityRows(2) + "LUT_3D_SIZE 2\n"));
+        assertEquals(0, info.size);
+        assertEquals("?", info.describe());
+    }
+
+    // ---------- Helpers ----------
+    static LutTable parse(String text) throws IOException {
+        return CubeParser.parse(stream(text));
+    }
+
+    static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Rows of an identity cube, red fastest. */
+    static String identityRows(int n) {
+        StringBuilder sb = new StringBuilder();
+        float[] t = identity(n);
+        for (int i = 0; i < t.length; i += 3) {
+            sb.append(t[i]).append(' ').append(t[i + 1]).append(' ').append(t[i + 2]).append('\n');
+        }
+        return sb.toString();
+    }
+
+    static float[] identity(int n) {
+        float[] t = new float[n * n * n * 3];
+        int o = 0;
+        for (int b = 0; b < n; b++) {
+            for (int g = 0; g < n; g++) {
+                for (int r = 0; r < n; r++) {
+                    t[o++] = r / (float) (n - 1);
+                    t[o++] = g / (float) (n - 1);
+                    t[o++] = b / (float) (n - 1);
+                }
+            }
+        }
+        return t;
+    }
+
+    /** A size³ cube with six-decimal random rows, as most grading tools write them. */
+    static String randomCube(int n, long seed) {
+        Random r = new Random(seed);
+        StringBuilder sb = new StringBuilder(n * n * n * 28 + 64);
+        sb.append("TITLE \"Random ").append(n).append("\"\nLUT_3D_SIZE ").append(n).append('\n');
+        for (int i = 0; i < n * n * n; i++) {
+            sb.append(String.format(Locale.US, "%.6f %.6f %.6f\n", r.nextFloat(), r.nextFloat(), r.nextFloat()));
+        }
+        return sb.toString();
+    }
+}
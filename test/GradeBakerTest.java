@@ -0,0 +1,124 @@
+// File: GradeBakerTest.java
+package com.squeezer.app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/**
+ * Local unit tests for GradeBaker's CPU bake (no GL: BakedLutTexture does the upload):
+ *  - A baked table sampled like the shader matches the unbaked LUT → grade → clamp chain
+ *  - Neutral grades bake to the LUT itself
+ *  - canBake(), the check LUTPreviewRenderer and LUTProcessor.Chain.prepare() bake through, refuses a vignette
+ * Unlike CubeParserTest these need android.jar on the classpath: LutBinaryCache (Mapped) imports
+ * android.content / android.provider / android.util and GradeBaker logs through android.util.Log. Only
+ * plain-Java methods are called (not update()), so the android.jar stubs are never hit.
+ */
+public class GradeBakerTest {
+    private static final int SIZE = 33;           // export bakes at the LUT's own lattice
+    private static final float TOLERANCE = 0.02f; // trilinear error of a graded lattice, about 5/255
+    private static final float CLIP_TOLERANCE = 0.05f; // steep grades: the clip knee falls between lattice points
+
+    // ---------- Baked vs unbaked ----------
+    @Test public void bakedMatchesShaderChain() {
+        LutBinaryCache.Mapped lut = look(SIZE);
+        GradeBaker.Grade[] grades = {
+                new GradeBaker.Grade(0.5f, 0.3f, -0.2f, 0.4f, 1.2f, 1.1f, 0.02f, 0.5f),
+                new GradeBaker.Grade(-0.7f, -0.5f, 0.3f, -0.3f, 0.8f, 0.6f, -0.03f, 0f),
+        };
+        for (GradeBaker.Grade grade : grades) {
+            float error = maxError(lut, grade, 4000, 5);
+            assertTrue("max error " + error, error <= TOLERANCE);
+        }
+    }
+
+    @Test public void bakedMatchesShaderChainPastClip() {
+        // Exposure and contrast push most of the cube past 1 (slope about 4 before the clip)
+        GradeBaker.Grade grade = new GradeBaker.Grade(1.5f, 0f, 0f, 0f, 1.5f, 1.3f, 0f, 1f);
+        float error = maxError(look(SIZE), grade, 4000, 7);
+        assertTrue("max error " + error, error <= CLIP_TOLERANCE);
+    }
+
+    @Test public void bakedMatchesGradeOnlyChain() {
+        GradeBaker.Grade grade = new GradeBaker.Grade(0.3f, 0.2f, 0.1f, 0.5f, 1.3f, 1.2f, 0.01f, 0.3f);
+        float error = maxError(null, grade, 4000, 6);
+        assertTrue("max error " + error, error <= TOLERANCE);
+    }
+
+    @Test public void neutralGradeBakesToTheLut() {
+        LutBinaryCache.Mapped lut = look(SIZE);
+        float[] base = new float[SIZE * SIZE * SIZE * 3];
+        float[] baked = new float[base.length];
+        GradeBaker.buildBase(lut, SIZE, base);
+        GradeBaker.applyGrade(base, baked, new GradeBaker.Grade(0f, 0f, 0f, 0f, 1f, 1f, 0f, 0f));
+        float[] expected = new float[base.length];
+        lut.table.get(expected);
+        assertArrayEquals(expected, baked, 1e-6f);
+    }
+
+    // ---------- Vignette ----------
+    @Test public void vignetteKeepsGradeInShader() {
+        // Baked tables are clamped before the vignette: whenever the program gets a VIGNETTE stage, the grade
+        // must stay in the shader, and without one it may be baked
+        for (float strength : new float[] { -1f, 0f, Float.MIN_VALUE, 0.3f, 1f }) {
+            boolean vignetted = (ShaderPrograms.features(true, null, true, strength) & ShaderPrograms.VIGNETTE) != 0;
+            assertEquals("strength " + strength, !vignetted, GradeBaker.canBake(strength));
+        }
+        assertFalse(GradeBaker.canBake(0.3f));
+    }
+
+    // ---------- Helpers ----------
+    /**
+     * Max channel difference between the baked path (table clamped like LutTexelFormat.pack, then sampled)
+     * and the unbaked shader path (sample the LUT, grade, clamp) over {@code samples} random colors.
+     */
+    private static float maxError(LutBinaryCache.Mapped lut, GradeBaker.Grade grade, int samples, long seed) {
+        float[] base = new float[SIZE * SIZE * SIZE * 3];
+        float[] baked = new float[base.length];
+        GradeBaker.buildBase(lut, SIZE, base);
+        GradeBaker.applyGrade(base, baked, grade);
+        for (int i = 0; i < baked.length; i++) baked[i] = clamp01(baked[i]);
+        FloatBuffer table = FloatBuffer.wrap(baked);
+
+        Random r = new Random(seed);
+        float[] a = new float[3], b = new float[3];
+        float max = 0f;
+        for (int i = 0; i < samples; i++) {
+            a[0] = b[0] = r.nextFloat();
+            a[1] = b[1] = r.nextFloat();
+            a[2] = b[2] = r.nextFloat();
+            GradeBaker.sampleCube(table, SIZE, a);
+            if (lut != null) GradeBaker.sampleCube(lut.table, lut.size, b);
+            GradeBaker.gradeRgb(b, grade);
+            for (int ch = 0; ch < 3; ch++) max = Math.max(max, Math.abs(clamp01(a[ch]) - clamp01(b[ch])));
+        }
+        return max;
+    }
+
+    /** A smooth look (lifted blacks, cross-channel warmth, mild S-curve), as a mapped .lutbin would hold it. */
+    private static LutBinaryCache.Mapped look(int n) {
+        float[] t = CubeParserTest.identity(n);
+        for (int i = 0; i < t.length; i += 3) {
+            float r = t[i], g = t[i + 1], b = t[i + 2];
+            t[i] = sCurve(0.04f + 0.94f * (0.9f * r + 0.1f * g));
+            t[i + 1] = sCurve(0.03f + 0.95f * g);
+            t[i + 2] = sCurve(0.05f + 0.9f * (0.85f * b + 0.15f * g));
+        }
+        return new LutBinaryCache.Mapped(n, FloatBuffer.wrap(t), 0, null,
+                new float[] { 0, 0, 0 }, new float[] { 1, 1, 1 }, "look" + n);
+    }
+
+    private static float sCurve(float x) {
+        return x * x * (3f - 2f * x) * 0.5f + x * 0.5f;
+    }
+
+    private static float clamp01(float x) {
+        return x < 0f ? 0f : (x > 1f ? 1f : x);
+    }
+}